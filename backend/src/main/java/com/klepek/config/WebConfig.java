@@ -1,5 +1,6 @@
 package com.klepek.config;
 
+import com.klepek.profiling.QueryProfileHeaders;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.web.servlet.config.annotation.CorsRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
@@ -13,6 +14,8 @@ public class WebConfig implements WebMvcConfigurer {
                 .allowedOrigins("http://localhost:5173")
                 .allowedMethods("GET", "POST", "PUT", "DELETE", "OPTIONS")
                 .allowedHeaders("*")
+                .exposedHeaders("ETag", QueryProfileHeaders.STATEMENTS, QueryProfileHeaders.ROWS,
+                        QueryProfileHeaders.SQL_TIME, QueryProfileHeaders.LOCK_WAIT)
                 .allowCredentials(true);
     }
 }
@@ -0,0 +1,7 @@
+package com.klepek.exceptions;
+
+public class OrderCancelledException extends RuntimeException {
+    public OrderCancelledException(String message) {
+        super(message);
+    }
+}
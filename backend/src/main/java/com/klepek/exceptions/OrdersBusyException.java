@@ -0,0 +1,7 @@
+package com.klepek.exceptions;
+
+public class OrdersBusyException extends RuntimeException {
+    public OrdersBusyException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,211 @@
+package com.klepek.idempotency;
+
+import com.klepek.exceptions.IdempotencyKeyReusedException;
+import com.klepek.model.Order;
+import com.klepek.model.StoredIdempotencyKey;
+import com.klepek.order.OptimisticRetry;
+import com.klepek.repository.IdempotencyKeyRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+// remembers which order an Idempotency-Key produced: a bounded LRU answers retries from memory,
+// the idempotency_keys table answers them after eviction or a restart
+@Component
+public class IdempotencyStore {
+
+    private static final Logger log = LoggerFactory.getLogger(IdempotencyStore.class);
+
+    private static final int MAX_KEY_LENGTH = 128;
+
+    private final IdempotencyKeyRepository idempotencyKeyRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final OptimisticRetry optimisticRetry;
+    private final long ttlNanos;
+    private final long retentionHours;
+    private final ReentrantLock cacheLock = new ReentrantLock();
+    private final LinkedHashMap<String, CachedResponse> cache;
+    private final Map<String, InFlight> inFlight = new ConcurrentHashMap<>();
+
+    public IdempotencyStore(
+            IdempotencyKeyRepository idempotencyKeyRepository,
+            PlatformTransactionManager transactionManager,
+            OptimisticRetry optimisticRetry,
+            @Value("${idempotency.cache.max-entries:10000}") int maxEntries,
+            @Value("${idempotency.cache.ttl-ms:600000}") long ttlMillis,
+            @Value("${idempotency.retention-hours:24}") long retentionHours
+    ) {
+        this.idempotencyKeyRepository = idempotencyKeyRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.optimisticRetry = optimisticRetry;
+        this.ttlNanos = ttlMillis * 1_000_000;
+        this.retentionHours = retentionHours;
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedResponse> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    // runs action at most once per scope and key; the key row commits in the same transaction as the action,
+    // so either both exist or a retry runs the action again
+    public Order execute(String scope, String key, String request, Supplier<Order> action, Function<Long, Order> replay) {
+        if (key.isBlank() || key.length() > MAX_KEY_LENGTH) {
+            throw new IllegalArgumentException("Idempotency-Key must be 1 to " + MAX_KEY_LENGTH + " characters");
+        }
+        String id = scope + ":" + key;
+        String fingerprint = fingerprint(request);
+
+        CachedResponse cached = cached(id);
+        if (cached != null) {
+            return cached.verified(key, fingerprint).order;
+        }
+
+        InFlight mine = new InFlight(fingerprint, new CompletableFuture<>());
+        InFlight running = inFlight.putIfAbsent(id, mine);
+        if (running != null) {
+            running.verified(key, fingerprint);
+            return await(running.result);
+        }
+
+        try {
+            Order order = cachedOrStored(id, key, fingerprint, replay)
+                    .orElseGet(() -> run(id, key, fingerprint, action, replay));
+            cache(id, new CachedResponse(fingerprint, order, System.nanoTime() + ttlNanos));
+            mine.result.complete(order);
+            return order;
+        } catch (RuntimeException e) {
+            mine.result.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(id, mine);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${idempotency.cleanup-interval-ms:3600000}")
+    public void deleteExpiredKeys() {
+        int deleted = idempotencyKeyRepository.deleteCreatedBefore(LocalDateTime.now().minusHours(retentionHours));
+        if (deleted > 0) {
+            log.info("Deleted {} expired idempotency keys", deleted);
+        }
+    }
+
+    private Optional<Order> cachedOrStored(String id, String key, String fingerprint, Function<Long, Order> replay) {
+        // the previous owner of this key may have finished between the cache check and claiming it
+        CachedResponse cached = cached(id);
+        if (cached != null) {
+            return Optional.of(cached.verified(key, fingerprint).order);
+        }
+        return idempotencyKeyRepository.findById(id)
+                .map(stored -> replay(stored, key, fingerprint, replay));
+    }
+
+    private Order run(String id, String key, String fingerprint, Supplier<Order> action, Function<Long, Order> replay) {
+        try {
+            // the action joins this transaction, so a version conflict is retried here, key row included
+            return optimisticRetry.call(() -> transactionTemplate.execute(status -> {
+                Order order = action.get();
+                idempotencyKeyRepository.saveAndFlush(new StoredIdempotencyKey(id, fingerprint, order.orderNumber()));
+                return order;
+            }));
+        } catch (DataIntegrityViolationException e) {
+            // another instance committed the same key first, its order is the answer
+            StoredIdempotencyKey stored = idempotencyKeyRepository.findById(id).orElseThrow(() -> e);
+            return replay(stored, key, fingerprint, replay);
+        }
+    }
+
+    private Order replay(StoredIdempotencyKey stored, String key, String fingerprint, Function<Long, Order> replay) {
+        if (!stored.getFingerprint().equals(fingerprint)) {
+            throw reused(key);
+        }
+        return replay.apply(stored.getOrderId());
+    }
+
+    private CachedResponse cached(String id) {
+        cacheLock.lock();
+        try {
+            CachedResponse cached = cache.get(id);
+            if (cached != null && cached.expiresAt - System.nanoTime() < 0) {
+                cache.remove(id);
+                return null;
+            }
+            return cached;
+        } finally {
+            cacheLock.unlock();
+        }
+    }
+
+    private void cache(String id, CachedResponse response) {
+        cacheLock.lock();
+        try {
+            cache.put(id, response);
+        } finally {
+            cacheLock.unlock();
+        }
+    }
+
+    private static Order await(CompletableFuture<Order> result) {
+        try {
+            return result.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    static String fingerprint(String request) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(request.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static IdempotencyKeyReusedException reused(String key) {
+        return new IdempotencyKeyReusedException("Idempotency-Key was already used for a different request: " + key);
+    }
+
+    private record CachedResponse(String fingerprint, Order order, long expiresAt) {
+
+        private CachedResponse verified(String key, String fingerprint) {
+            if (!this.fingerprint.equals(fingerprint)) {
+                throw reused(key);
+            }
+            return this;
+        }
+    }
+
+    private record InFlight(String fingerprint, CompletableFuture<Order> result) {
+
+        private void verified(String key, String fingerprint) {
+            if (!this.fingerprint.equals(fingerprint)) {
+                throw reused(key);
+            }
+        }
+    }
+}
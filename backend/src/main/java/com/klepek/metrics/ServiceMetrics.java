@@ -0,0 +1,129 @@
+package com.klepek.metrics;
+
+import com.klepek.exceptions.InsufficientStockException;
+import com.klepek.exceptions.OrderExpiredException;
+import com.klepek.order.OrderService;
+import com.klepek.product.ProductService;
+import com.klepek.profiling.QueryProfile;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.stereotype.Component;
+
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// times every OrderService and ProductService call, counts the business rejections they throw and records the
+// statements, rows and stock lock wait each call caused; all meters are registered when the bean is wrapped,
+// so a call only reads the clock and the thread's query profile and looks up its method
+@Component
+public class ServiceMetrics implements BeanPostProcessor {
+
+    private final ObjectProvider<MeterRegistry> meterRegistry;
+
+    public ServiceMetrics(ObjectProvider<MeterRegistry> meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (bean instanceof OrderService orderService) {
+            return instrument(orderService, OrderService.class, "orders", meterRegistry.getObject());
+        }
+        if (bean instanceof ProductService productService) {
+            return instrument(productService, ProductService.class, "products", meterRegistry.getObject());
+        }
+        return bean;
+    }
+
+    // the transactional proxy is wrapped from the outside, so the timers include the commit
+    public static <T> T instrument(T target, Class<T> type, String service, MeterRegistry meterRegistry) {
+        Map<Method, MethodMeters> meters = new HashMap<>();
+        for (Method method : type.getMethods()) {
+            meters.put(method, new MethodMeters(meterRegistry, service, method.getName()));
+        }
+
+        ProxyFactory proxyFactory = new ProxyFactory();
+        proxyFactory.setTarget(target);
+        proxyFactory.addInterface(type);
+        proxyFactory.addAdvice((MethodInterceptor) invocation -> {
+            MethodMeters methodMeters = meters.get(invocation.getMethod());
+            if (methodMeters == null) {
+                return invocation.proceed();
+            }
+            QueryProfile profile = QueryProfile.current();
+            long statements = profile.statements();
+            long rows = profile.rows();
+            long sqlNanos = profile.sqlNanos();
+            long lockWaitNanos = profile.lockWaitNanos();
+            long started = System.nanoTime();
+            try {
+                return invocation.proceed();
+            } catch (InsufficientStockException e) {
+                methodMeters.insufficientStock.increment();
+                throw e;
+            } catch (OrderExpiredException e) {
+                methodMeters.orderExpired.increment();
+                throw e;
+            } finally {
+                methodMeters.duration.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+                methodMeters.statements.record(profile.statements() - statements);
+                methodMeters.rows.record(profile.rows() - rows);
+                methodMeters.sqlTime.record(profile.sqlNanos() - sqlNanos, TimeUnit.NANOSECONDS);
+                methodMeters.lockWait.record(profile.lockWaitNanos() - lockWaitNanos, TimeUnit.NANOSECONDS);
+            }
+        });
+        return type.cast(proxyFactory.getProxy(type.getClassLoader()));
+    }
+
+    private static final class MethodMeters {
+        private final Timer duration;
+        private final Counter insufficientStock;
+        private final Counter orderExpired;
+        private final DistributionSummary statements;
+        private final DistributionSummary rows;
+        private final Timer sqlTime;
+        private final Timer lockWait;
+
+        private MethodMeters(MeterRegistry meterRegistry, String service, String method) {
+            this.duration = Timer.builder("service.duration")
+                    .tag("service", service)
+                    .tag("method", method)
+                    .publishPercentileHistogram()
+                    .register(meterRegistry);
+            this.insufficientStock = rejections(meterRegistry, service, method, InsufficientStockException.class);
+            this.orderExpired = rejections(meterRegistry, service, method, OrderExpiredException.class);
+            this.statements = DistributionSummary.builder("service.sql.statements")
+                    .tag("service", service)
+                    .tag("method", method)
+                    .register(meterRegistry);
+            this.rows = DistributionSummary.builder("service.sql.rows")
+                    .tag("service", service)
+                    .tag("method", method)
+                    .register(meterRegistry);
+            this.sqlTime = Timer.builder("service.sql.time")
+                    .tag("service", service)
+                    .tag("method", method)
+                    .register(meterRegistry);
+            this.lockWait = Timer.builder("service.stock.lock.wait")
+                    .tag("service", service)
+                    .tag("method", method)
+                    .register(meterRegistry);
+        }
+
+        private static Counter rejections(MeterRegistry meterRegistry, String service, String method, Class<?> exception) {
+            return Counter.builder("service.rejections")
+                    .tag("service", service)
+                    .tag("method", method)
+                    .tag("exception", exception.getSimpleName())
+                    .register(meterRegistry);
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package com.klepek.model;
+
+import java.time.LocalDateTime;
+
+// what sinks receive; eventId lets consumers drop redeliveries, it is assigned at persist time and so is no commit order
+public record OrderEvent(
+        Long eventId,
+        Long orderId,
+        OrderEventType type,
+        OrderStatus status,
+        LocalDateTime occurredAt
+) {
+}
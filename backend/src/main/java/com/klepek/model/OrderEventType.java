@@ -0,0 +1,8 @@
+package com.klepek.model;
+
+public enum OrderEventType {
+    CREATED,
+    PAID,
+    CANCELLED,
+    EXPIRED
+}
@@ -0,0 +1,9 @@
+package com.klepek.model;
+
+import java.time.LocalDateTime;
+
+public record OrderExpiry(
+        Long orderId,
+        LocalDateTime expiresAt
+) {
+}
@@ -0,0 +1,14 @@
+package com.klepek.model;
+
+import java.math.BigDecimal;
+
+// flat projection of one order item, used where orders are streamed instead of loaded as entities
+public record OrderLine(
+        Long orderId,
+        OrderStatus status,
+        Long productId,
+        String productName,
+        Integer quantity,
+        BigDecimal pricePerUnit
+) {
+}
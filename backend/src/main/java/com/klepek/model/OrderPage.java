@@ -0,0 +1,10 @@
+package com.klepek.model;
+
+import java.util.List;
+
+public record OrderPage(
+        List<Order> orders,
+        // opaque token for the next page, null on the last one
+        String nextCursor
+) {
+}
@@ -0,0 +1,24 @@
+package com.klepek.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+public record OrderResult(
+        int index,
+        Order order,
+        String error,
+        // the validation error behind it, so in-process callers can rethrow what createOrder would have thrown
+        @JsonIgnore RuntimeException cause
+) {
+
+    public static OrderResult created(int index, Order order) {
+        return new OrderResult(index, order, null, null);
+    }
+
+    public static OrderResult failed(int index, String error) {
+        return new OrderResult(index, null, error, null);
+    }
+
+    public static OrderResult failed(int index, RuntimeException cause) {
+        return new OrderResult(index, null, cause.getMessage(), cause);
+    }
+}
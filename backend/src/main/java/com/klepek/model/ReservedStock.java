@@ -0,0 +1,7 @@
+package com.klepek.model;
+
+public record ReservedStock(
+        Long productId,
+        Long quantity
+) {
+}
@@ -0,0 +1,9 @@
+package com.klepek.model;
+
+// changes buffered for one product row since the previous flush
+public record StockDelta(
+        int stock,
+        int reserved,
+        int activeOrderLines
+) {
+}
@@ -0,0 +1,9 @@
+package com.klepek.model;
+
+// available can be ordered right now, reserved is held by orders that are not paid yet
+public record StockLevel(
+        Long productId,
+        int available,
+        int reserved
+) {
+}
@@ -0,0 +1,69 @@
+package com.klepek.model;
+
+import jakarta.persistence.*;
+import org.springframework.data.domain.Persistable;
+
+import java.time.LocalDateTime;
+
+@Entity
+@Table(
+        name = "idempotency_keys",
+        indexes = @Index(name = "idx_idempotency_keys_created_at", columnList = "created_at")
+)
+public class StoredIdempotencyKey implements Persistable<String> {
+
+    @Id
+    @Column(name = "idempotency_key", length = 160)
+    private String key;
+
+    @Column(nullable = false, length = 64)
+    private String fingerprint;
+
+    @Column(name = "order_id", nullable = false)
+    private Long orderId;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    // the id is assigned by the client, so save() has to be told to insert; a duplicate key must fail, not merge
+    @Transient
+    private boolean isNew = true;
+
+    public StoredIdempotencyKey() {
+    }
+
+    public StoredIdempotencyKey(String key, String fingerprint, Long orderId) {
+        this.key = key;
+        this.fingerprint = fingerprint;
+        this.orderId = orderId;
+        this.createdAt = LocalDateTime.now();
+    }
+
+    @Override
+    public String getId() {
+        return key;
+    }
+
+    @Override
+    public boolean isNew() {
+        return isNew;
+    }
+
+    @PostLoad
+    @PostPersist
+    void markNotNew() {
+        this.isNew = false;
+    }
+
+    public String getFingerprint() {
+        return fingerprint;
+    }
+
+    public Long getOrderId() {
+        return orderId;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+}
@@ -8,10 +8,16 @@ import java.util.ArrayList;
 import java.util.List;
 
 @Entity
-@Table(name = "orders")
+@Table(
+        name = "orders",
+        indexes = @Index(name = "idx_orders_status_expires_at", columnList = "status, expires_at")
+)
 public class StoredOrder {
+    // pooled sequence ids, here and on products and order items, let Hibernate batch inserts; identity columns
+    // would force one round trip per row
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "order_id")
+    @SequenceGenerator(name = "order_id", sequenceName = "orders_seq", allocationSize = 50)
     private Long id;
 
     @Column(nullable = false)
@@ -30,6 +36,11 @@ public class StoredOrder {
     @Column(name = "expires_at", nullable = false)
     private LocalDateTime expiresAt;
 
+    // a concurrent pay, cancel or expiry of the same order fails its update instead of overwriting the status
+    @Version
+    @Column(nullable = false)
+    private long version;
+
     @OneToMany(mappedBy = "order", cascade = CascadeType.ALL)
     private List<StoredOrderItem> orderItems = new ArrayList<>();
 
@@ -43,6 +54,10 @@ public class StoredOrder {
         return id;
     }
 
+    public long getVersion() {
+        return version;
+    }
+
     public BigDecimal getTotalAmount() {
         return totalAmount;
     }
@@ -0,0 +1,64 @@
+package com.klepek.model;
+
+import jakarta.persistence.*;
+
+import java.time.LocalDateTime;
+
+// outbox row, inserted in the transaction that changed the order and deleted once every sink has it
+@Entity
+@Table(name = "order_events")
+public class StoredOrderEvent {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "order_event_id")
+    @SequenceGenerator(name = "order_event_id", sequenceName = "order_events_seq", allocationSize = 50)
+    private Long id;
+
+    @Column(name = "order_id", nullable = false)
+    private Long orderId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "event_type", nullable = false)
+    private OrderEventType type;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private OrderStatus status;
+
+    @Column(name = "occurred_at", nullable = false)
+    private LocalDateTime occurredAt;
+
+    public StoredOrderEvent() {
+    }
+
+    public StoredOrderEvent(Long orderId, OrderEventType type, OrderStatus status) {
+        this.orderId = orderId;
+        this.type = type;
+        this.status = status;
+        this.occurredAt = LocalDateTime.now();
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public Long getOrderId() {
+        return orderId;
+    }
+
+    public OrderEventType getType() {
+        return type;
+    }
+
+    public OrderStatus getStatus() {
+        return status;
+    }
+
+    public LocalDateTime getOccurredAt() {
+        return occurredAt;
+    }
+
+    public OrderEvent toOrderEvent() {
+        return new OrderEvent(id, orderId, type, status, occurredAt);
+    }
+}
@@ -5,7 +5,13 @@ import jakarta.persistence.*;
 import java.math.BigDecimal;
 
 @Entity
-@Table(name="order_items")
+@Table(
+        name = "order_items",
+        indexes = {
+                @Index(name = "idx_order_items_order_id", columnList = "order_id"),
+                @Index(name = "idx_order_items_product_id", columnList = "product_id")
+        }
+)
 public class StoredOrderItem {
 
     public StoredOrderItem() {}
@@ -17,21 +23,32 @@ public class StoredOrderItem {
     ) {
         this.order = order;
         this.product = product;
+        this.productName = product.getName();
+        this.unitPrice = product.getPricePerUnit();
         this.quantity = quantity;
     }
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "order_item_id")
+    @SequenceGenerator(name = "order_item_id", sequenceName = "order_items_seq", allocationSize = 50)
     private Long id;
 
     @ManyToOne()
     @JoinColumn(name = "order_id")
     private StoredOrder order;
 
-    @ManyToOne()
+    // only the stock paths follow the association, the order history reads the snapshot below
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "product_id")
     private StoredProduct product;
 
+    // copied from the product when the line is bought and never rewritten
+    @Column(name = "product_name", updatable = false)
+    private String productName;
+
+    @Column(name = "unit_price", updatable = false)
+    private BigDecimal unitPrice;
+
     @Column(nullable = false)
     private int quantity;
 
@@ -46,6 +63,18 @@ public class StoredOrderItem {
         return product;
     }
 
+    public Long getProductId() {
+        return product.getId();
+    }
+
+    public String getProductName() {
+        return productName;
+    }
+
+    public BigDecimal getUnitPrice() {
+        return unitPrice;
+    }
+
     public int getQuantity() {
         return quantity;
     }
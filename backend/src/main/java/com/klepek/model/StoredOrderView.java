@@ -0,0 +1,71 @@
+package com.klepek.model;
+
+import jakarta.persistence.*;
+import org.springframework.data.domain.Persistable;
+
+import java.time.LocalDateTime;
+
+// read model of one order: its lines as they were at purchase, serialized once when the order is created,
+// so reads never join items and products; only the status changes afterwards
+@Entity
+@Table(
+        name = "order_views",
+        indexes = @Index(name = "idx_order_views_status_id", columnList = "status, id")
+)
+public class StoredOrderView implements Persistable<Long> {
+
+    @Id
+    private Long id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private OrderStatus status;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(nullable = false, length = 1_000_000)
+    private String items;
+
+    // the id is the order's, so save() has to be told to insert instead of looking for a row to merge
+    @Transient
+    private boolean isNew = true;
+
+    public StoredOrderView() {
+    }
+
+    public StoredOrderView(Long id, OrderStatus status, LocalDateTime createdAt, String items) {
+        this.id = id;
+        this.status = status;
+        this.createdAt = createdAt;
+        this.items = items;
+    }
+
+    @Override
+    public Long getId() {
+        return id;
+    }
+
+    @Override
+    public boolean isNew() {
+        return isNew;
+    }
+
+    @PostLoad
+    @PostPersist
+    void markNotNew() {
+        this.isNew = false;
+    }
+
+    public OrderStatus getStatus() {
+        return status;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public String getItems() {
+        return items;
+    }
+}
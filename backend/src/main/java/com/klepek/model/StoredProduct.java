@@ -11,7 +11,8 @@ import java.math.BigDecimal;
 @Table(name = "products")
 public class StoredProduct {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "product_id")
+    @SequenceGenerator(name = "product_id", sequenceName = "products_seq", allocationSize = 50)
     private Long id;
 
     @NotBlank(message = "Product name is required")
@@ -23,6 +24,19 @@ public class StoredProduct {
     @Column(nullable = false)
     private Integer stockQuantity;
 
+    // units held by unpaid orders and the number of order lines that are not cancelled; only ever changed
+    // by the stock flush, so saving a loaded product never writes back a stale count
+    @Column(name = "reserved_quantity", nullable = false, updatable = false)
+    private int reservedQuantity;
+
+    @Column(name = "active_order_lines", nullable = false, updatable = false)
+    private int activeOrderLines;
+
+    // guards edits of the catalog fields; the stock columns are moved by conditional bulk updates that leave it alone
+    @Version
+    @Column(nullable = false)
+    private long version;
+
     @NotNull(message = "Price per unit is required")
     @Min(value = 0, message = "Price per unit must be non-negative")
     @Column(nullable = false)
@@ -61,6 +75,14 @@ public class StoredProduct {
         this.stockQuantity = stockQuantity;
     }
 
+    public int getReservedQuantity() {
+        return reservedQuantity;
+    }
+
+    public int getActiveOrderLines() {
+        return activeOrderLines;
+    }
+
     public BigDecimal getPricePerUnit() {
         return pricePerUnit;
     }
@@ -0,0 +1,125 @@
+package com.klepek.order;
+
+import com.klepek.exceptions.OrdersBusyException;
+import com.klepek.idempotency.IdempotencyStore;
+import com.klepek.model.Order;
+import com.klepek.model.OrderPage;
+import com.klepek.model.OrderResult;
+import com.klepek.model.OrderStatus;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+// the blocking OrderService behind two bounded pools: request threads hand the transaction off and are released,
+// writes and reads queue separately so a checkout spike cannot starve reads, and a full queue rejects at once
+// instead of letting waiting work pile up
+@Service
+public class AsyncOrderService {
+
+    private final OrderService orderService;
+    private final IdempotencyStore idempotencyStore;
+    // only present with orders.coalescing.enabled
+    private final OrderCoalescer orderCoalescer;
+    private final Pool writes;
+    private final Pool reads;
+
+    public AsyncOrderService(
+            OrderService orderService,
+            IdempotencyStore idempotencyStore,
+            ObjectProvider<OrderCoalescer> orderCoalescer,
+            MeterRegistry meterRegistry,
+            @Value("${orders.async.write-threads:16}") int writeThreads,
+            @Value("${orders.async.read-threads:8}") int readThreads,
+            @Value("${orders.async.queue-capacity:256}") int queueCapacity
+    ) {
+        this.orderService = orderService;
+        this.idempotencyStore = idempotencyStore;
+        this.orderCoalescer = orderCoalescer.getIfAvailable();
+        this.writes = new Pool("write", writeThreads, queueCapacity, meterRegistry);
+        this.reads = new Pool("read", readThreads, queueCapacity, meterRegistry);
+    }
+
+    public CompletableFuture<Order> getOrder(Long id) {
+        return reads.submit(() -> orderService.getOrder(id));
+    }
+
+    public CompletableFuture<OrderPage> getOrders(OrderStatus status, LocalDateTime createdFrom, LocalDateTime createdTo, String cursor, int limit) {
+        return reads.submit(() -> orderService.getOrders(status, createdFrom, createdTo, cursor, limit));
+    }
+
+    // a keyed write runs through the IdempotencyStore on the write pool, under the same scope as /api/v1/orders,
+    // so a client that timed out can safely send it again; keyed creates are never coalesced
+    public CompletableFuture<Order> createOrder(Order order, String idempotencyKey) {
+        if (idempotencyKey == null) {
+            return writes.submit(() -> orderCoalescer != null ? orderCoalescer.createOrder(order) : orderService.createOrder(order));
+        }
+        String request = order.products().stream()
+                .map(product -> product.id() + "x" + product.quantity())
+                .collect(Collectors.joining(","));
+        return writes.submit(() -> idempotencyStore.execute("createOrder", idempotencyKey, request,
+                () -> orderService.createOrder(order), orderService::getOrder));
+    }
+
+    public CompletableFuture<List<OrderResult>> createOrders(List<Order> orders) {
+        return writes.submit(() -> orderService.createOrders(orders));
+    }
+
+    public CompletableFuture<Order> payOrder(Long id, String idempotencyKey) {
+        if (idempotencyKey == null) {
+            return writes.submit(() -> orderService.payOrder(id));
+        }
+        return writes.submit(() -> idempotencyStore.execute("payOrder", idempotencyKey, String.valueOf(id),
+                () -> orderService.payOrder(id), orderService::getOrder));
+    }
+
+    public CompletableFuture<Order> cancelOrder(Long id) {
+        return writes.submit(() -> orderService.cancelOrder(id));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        writes.executor.shutdown();
+        reads.executor.shutdown();
+    }
+
+    private static final class Pool {
+        private final String name;
+        private final ThreadPoolExecutor executor;
+        private final Counter rejected;
+
+        private Pool(String name, int threads, int queueCapacity, MeterRegistry meterRegistry) {
+            this.name = name;
+            this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(queueCapacity),
+                    Thread.ofPlatform().name("orders-" + name + "-", 0).daemon().factory(),
+                    new ThreadPoolExecutor.AbortPolicy());
+            Gauge.builder("orders.async.queued", executor, pool -> pool.getQueue().size())
+                    .tag("pool", name)
+                    .register(meterRegistry);
+            this.rejected = Counter.builder("orders.async.rejected").tag("pool", name).register(meterRegistry);
+        }
+
+        private <T> CompletableFuture<T> submit(Supplier<T> work) {
+            try {
+                return CompletableFuture.supplyAsync(work, executor);
+            } catch (RejectedExecutionException e) {
+                rejected.increment();
+                return CompletableFuture.failedFuture(new OrdersBusyException("Too many pending order " + name + "s, retry later"));
+            }
+        }
+    }
+}
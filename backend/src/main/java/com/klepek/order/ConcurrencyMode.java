@@ -0,0 +1,8 @@
+package com.klepek.order;
+
+public enum ConcurrencyMode {
+    // paying, cancelling and expiring share-lock the order row until their transaction ends
+    PESSIMISTIC,
+    // orders are read without locks, the version check at commit rejects a concurrent change and OptimisticRetry runs the call again
+    OPTIMISTIC
+}
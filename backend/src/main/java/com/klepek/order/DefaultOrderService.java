@@ -1,86 +1,151 @@
 package com.klepek.order;
 
 import com.klepek.exceptions.InsufficientStockException;
+import com.klepek.exceptions.OrderCancelledException;
 import com.klepek.exceptions.OrderNotFoundException;
 import com.klepek.exceptions.OrderExpiredException;
 import com.klepek.exceptions.ProductNotFoundException;
 import com.klepek.model.*;
-import com.klepek.repository.OrderItemsRepository;
+import com.klepek.outbox.OrderOutbox;
 import com.klepek.repository.OrdersRepository;
 import com.klepek.repository.ProductRepository;
+import com.klepek.stock.StockLine;
+import com.klepek.stock.StockReservationEngine;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 public class DefaultOrderService implements OrderService {
 
+    static final int MAX_PAGE_SIZE = 100;
+
     private final OrdersRepository ordersRepository;
     private final ProductRepository productsRepository;
-    private final OrderItemsRepository orderItemsRepository;
+    private final StockReservationEngine stockReservationEngine;
+    private final OrderExpiryWheel orderExpiryWheel;
+    private final OrderVersions orderVersions;
+    private final OrderOutbox orderOutbox;
+    private final OrderViews orderViews;
+    private final OrderMetrics orderMetrics;
+    private final ConcurrencyMode concurrencyMode;
 
     @Autowired
     public DefaultOrderService(
             OrdersRepository ordersRepository,
             ProductRepository productsRepository,
-            OrderItemsRepository orderItemsRepository
+            StockReservationEngine stockReservationEngine,
+            OrderExpiryWheel orderExpiryWheel,
+            OrderVersions orderVersions,
+            OrderOutbox orderOutbox,
+            OrderViews orderViews,
+            OrderMetrics orderMetrics,
+            @Value("${orders.concurrency.mode:PESSIMISTIC}") ConcurrencyMode concurrencyMode
     ) {
         this.ordersRepository = ordersRepository;
         this.productsRepository = productsRepository;
-        this.orderItemsRepository = orderItemsRepository;
+        this.stockReservationEngine = stockReservationEngine;
+        this.orderExpiryWheel = orderExpiryWheel;
+        this.orderVersions = orderVersions;
+        this.orderOutbox = orderOutbox;
+        this.orderViews = orderViews;
+        this.orderMetrics = orderMetrics;
+        this.concurrencyMode = concurrencyMode;
     }
 
     @Override
+    public String getOrderVersion(Long id) {
+        return orderVersions.current(id);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
     public Order getOrder(Long id) {
-        StoredOrder storedOrder = ordersRepository.findById(id)
+        return orderViews.find(id)
                 .orElseThrow(() -> new ProductNotFoundException("Order not found: " + id));
-        return new Order(storedOrder.getId(), mapOrderItemsToProducts(storedOrder), storedOrder.getStatus());
     }
 
     @Override
     @Transactional
     public Order createOrder(Order order) {
-        final StoredOrder storedOrder = new StoredOrder();
-
-        List<StoredOrderItem> orderItems = order.products().stream()
-                .map(product -> {
-                    StoredProduct storedProduct = productsRepository.findById(product.id())
-                            .orElseThrow(() -> new ProductNotFoundException("Product not found: " + product.id()));
+        Map<Long, Integer> quantities = mergeLines(order);
+        Map<Long, StoredProduct> storedProducts = loadProducts(quantities.keySet());
 
-                    if (storedProduct.getStockQuantity() < product.quantity()) {
-                        throw new InsufficientStockException("Insufficient stock for product: " + storedProduct.getName());
-                    }
+        StoredOrder savedOrder = ordersRepository.save(reserve(quantities, storedProducts));
+        orderViews.created(savedOrder);
+        orderOutbox.record(savedOrder, OrderEventType.CREATED);
+        scheduleExpiry(savedOrder);
+        return new Order(savedOrder.getId(), mapOrderItemsToProducts(savedOrder), savedOrder.getStatus());
+    }
 
-                    storedProduct.setStockQuantity(storedProduct.getStockQuantity() - product.quantity());
-                    productsRepository.save(storedProduct);
+    // every order is reserved on its own, so one rejected order never fails the rest of the batch;
+    // the accepted ones are inserted together and reach the database as JDBC batches at commit
+    @Override
+    @Transactional
+    public List<OrderResult> createOrders(List<Order> orders) {
+        List<Map<Long, Integer>> quantities = orders.stream().map(this::mergeLines).toList();
+        Map<Long, StoredProduct> storedProducts = loadProducts(quantities.stream()
+                .flatMap(lines -> lines.keySet().stream())
+                .collect(Collectors.toSet()));
 
-                    StoredOrderItem orderItem = new StoredOrderItem(storedOrder, storedProduct, product.quantity());
-                    orderItem.setTotalPrice(storedProduct.getPricePerUnit().multiply(new BigDecimal(product.quantity())));
-                    return orderItemsRepository.save(orderItem);
-                })
-                .collect(Collectors.toList());
+        StoredOrder[] reserved = new StoredOrder[orders.size()];
+        RuntimeException[] failures = new RuntimeException[orders.size()];
+        for (int i = 0; i < orders.size(); i++) {
+            try {
+                reserved[i] = reserve(quantities.get(i), storedProducts);
+            } catch (ProductNotFoundException | InsufficientStockException e) {
+                failures[i] = e;
+            }
+        }
 
-        storedOrder.setOrderItems(orderItems);
-        BigDecimal totalAmount = orderItems.stream()
-                .map(StoredOrderItem::getTotalPrice)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
-        storedOrder.setTotalAmount(totalAmount);
-        final StoredOrder savedOrder = ordersRepository.save(storedOrder);
+        List<StoredOrder> savedOrders = ordersRepository.saveAll(Arrays.stream(reserved).filter(Objects::nonNull).toList());
+        for (StoredOrder savedOrder : savedOrders) {
+            orderViews.created(savedOrder);
+            orderOutbox.record(savedOrder, OrderEventType.CREATED);
+            scheduleExpiry(savedOrder);
+        }
 
-        return new Order(savedOrder.getId(), mapOrderItemsToProducts(storedOrder), savedOrder.getStatus());
+        List<OrderResult> results = new ArrayList<>(orders.size());
+        for (int i = 0; i < orders.size(); i++) {
+            StoredOrder storedOrder = reserved[i];
+            results.add(storedOrder == null
+                    ? OrderResult.failed(i, failures[i])
+                    : OrderResult.created(i, new Order(storedOrder.getId(), mapOrderItemsToProducts(storedOrder), storedOrder.getStatus())));
+        }
+        return results;
     }
 
     @Override
     @Transactional
     public Order payOrder(Long id) {
-        StoredOrder storedOrder = ordersRepository.findById(id)
+        StoredOrder storedOrder = findForUpdate(id)
                 .orElseThrow(() -> new OrderNotFoundException("Order not found: " + id));
 
+        // a cancelled order already released its reservation, settling it again would drive the counters negative
+        if (storedOrder.getStatus() == OrderStatus.CANCELLED) {
+            throw new OrderCancelledException("Order is cancelled: " + id);
+        }
+
         if (storedOrder.isExpired()) {
             throw new OrderExpiredException("Order has expired: " + id);
         }
@@ -88,8 +153,16 @@ public class DefaultOrderService implements OrderService {
         if (storedOrder.getStatus() == OrderStatus.PAID) {
             return new Order(storedOrder.getId(), mapOrderItemsToProducts(storedOrder), storedOrder.getStatus());
         } else {
+            for (StoredOrderItem orderItem : storedOrder.getOrderItems()) {
+                stockReservationEngine.settle(orderItem.getProduct(), orderItem.getQuantity());
+            }
             storedOrder.setStatus(OrderStatus.PAID);
             StoredOrder paidOrder = ordersRepository.save(storedOrder);
+            orderViews.statusChanged(paidOrder);
+            orderOutbox.record(paidOrder, OrderEventType.PAID);
+            orderExpiryWheel.cancel(paidOrder.getId());
+            orderVersions.changed(paidOrder.getId());
+            afterCommit(orderMetrics::closed);
             return new Order(paidOrder.getId(), mapOrderItemsToProducts(paidOrder), paidOrder.getStatus());
         }
     }
@@ -97,51 +170,178 @@ public class DefaultOrderService implements OrderService {
     @Override
     @Transactional
     public Order cancelOrder(Long id) {
-        StoredOrder order = ordersRepository.findById(id)
+        StoredOrder order = findForUpdate(id)
                 .orElseThrow(() -> new OrderNotFoundException("Order not found: " + id));
 
         if (order.getStatus() == OrderStatus.CANCELLED) {
             return new Order(order.getId(), mapOrderItemsToProducts(order), order.getStatus());
         }
 
-        for (StoredOrderItem orderItem : order.getOrderItems()) {
-            StoredProduct product = orderItem.getProduct();
-            product.setStockQuantity(product.getStockQuantity() + orderItem.getQuantity());
-            productsRepository.save(product);
+        StoredOrder cancelledOrder = cancel(order, OrderEventType.CANCELLED);
+        return new Order(cancelledOrder.getId(), mapOrderItemsToProducts(cancelledOrder), cancelledOrder.getStatus());
+    }
+
+    @Override
+    @Transactional
+    public boolean expireOrder(Long id) {
+        StoredOrder order = findForUpdate(id).orElse(null);
+
+        // the order may have been paid or cancelled since the sweeper selected it
+        if (order == null || order.getStatus() != OrderStatus.CREATED || !order.isExpired()) {
+            return false;
         }
 
-        order.setStatus(OrderStatus.CANCELLED);
-        StoredOrder cancelledOrder = ordersRepository.save(order);
-        return new Order(cancelledOrder.getId(), mapOrderItemsToProducts(cancelledOrder), cancelledOrder.getStatus());
+        cancel(order, OrderEventType.EXPIRED);
+        return true;
     }
 
     @Override
+    @Transactional(readOnly = true)
     public List<Order> getAllOrders() {
-        return ordersRepository.findAll().stream()
-                .map(storedOrder -> new Order(storedOrder.getId(), mapOrderItemsToProducts(storedOrder), storedOrder.getStatus()))
-                .toList();
+        return orderViews.findAll();
     }
 
-    @Scheduled(fixedRate = 60000)
-    @Transactional
-    public void checkExpiredOrders() {
-        List<StoredOrder> expiredOrders = ordersRepository.findAll().stream()
-                .filter(order -> order.getStatus() == OrderStatus.CREATED && order.isExpired())
+    @Override
+    @Transactional(readOnly = true)
+    public OrderPage getOrders(OrderStatus status, LocalDateTime createdFrom, LocalDateTime createdTo, String cursor, int limit) {
+        int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        long afterId = cursor == null ? 0 : decodeCursor(cursor);
+
+        List<Order> orders = orderViews.findPage(afterId, status, createdFrom, createdTo, pageSize + 1);
+        boolean hasMore = orders.size() > pageSize;
+        List<Order> page = hasMore ? orders.subList(0, pageSize) : orders;
+
+        String nextCursor = hasMore ? encodeCursor(page.get(page.size() - 1).orderNumber()) : null;
+        return new OrderPage(page, nextCursor);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public void exportOrders(Consumer<Order> consumer) {
+        try (Stream<OrderLine> lines = ordersRepository.streamOrderLines()) {
+            Long currentId = null;
+            OrderStatus currentStatus = null;
+            List<Product> products = new ArrayList<>();
+
+            for (OrderLine line : (Iterable<OrderLine>) lines::iterator) {
+                if (!line.orderId().equals(currentId)) {
+                    if (currentId != null) {
+                        consumer.accept(new Order(currentId, products, currentStatus));
+                    }
+                    currentId = line.orderId();
+                    currentStatus = line.status();
+                    products = new ArrayList<>();
+                }
+                products.add(new Product(line.productId(), line.productName(), line.quantity(), line.pricePerUnit()));
+            }
+            if (currentId != null) {
+                consumer.accept(new Order(currentId, products, currentStatus));
+            }
+        }
+    }
+
+    private String encodeCursor(long lastId) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(Long.toString(lastId).getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private long decodeCursor(String cursor) {
+        try {
+            return Long.parseLong(new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.US_ASCII));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor);
+        }
+    }
+
+    private Map<Long, Integer> mergeLines(Order order) {
+        return order.products().stream()
+                .collect(Collectors.toMap(Product::id, Product::quantity, Integer::sum, TreeMap::new));
+    }
+
+    private Map<Long, StoredProduct> loadProducts(Collection<Long> ids) {
+        return productsRepository.findAllById(ids).stream()
+                .collect(Collectors.toMap(StoredProduct::getId, Function.identity()));
+    }
+
+    private StoredOrder reserve(Map<Long, Integer> quantities, Map<Long, StoredProduct> storedProducts) {
+        List<StockLine> stockLines = quantities.entrySet().stream()
+                .map(entry -> {
+                    StoredProduct storedProduct = storedProducts.get(entry.getKey());
+                    if (storedProduct == null) {
+                        throw new ProductNotFoundException("Product not found: " + entry.getKey());
+                    }
+                    return new StockLine(storedProduct, entry.getValue());
+                })
                 .toList();
+        stockReservationEngine.reserve(stockLines);
+
+        StoredOrder storedOrder = new StoredOrder();
+        List<StoredOrderItem> orderItems = stockLines.stream()
+                .map(line -> {
+                    StoredOrderItem orderItem = new StoredOrderItem(storedOrder, line.product(), line.quantity());
+                    orderItem.setTotalPrice(orderItem.getUnitPrice().multiply(new BigDecimal(line.quantity())));
+                    return orderItem;
+                })
+                .collect(Collectors.toList());
+
+        storedOrder.setOrderItems(orderItems);
+        storedOrder.setTotalAmount(orderItems.stream()
+                .map(StoredOrderItem::getTotalPrice)
+                .reduce(BigDecimal.ZERO, BigDecimal::add));
+        return storedOrder;
+    }
+
+    private Optional<StoredOrder> findForUpdate(Long id) {
+        return concurrencyMode == ConcurrencyMode.PESSIMISTIC ? ordersRepository.findLockedById(id) : ordersRepository.findById(id);
+    }
+
+    private void scheduleExpiry(StoredOrder order) {
+        afterCommit(() -> {
+            orderExpiryWheel.schedule(order.getId(), order.getExpiresAt());
+            orderMetrics.opened();
+        });
+    }
+
+    private StoredOrder cancel(StoredOrder order, OrderEventType eventType) {
+        boolean paid = order.getStatus() == OrderStatus.PAID;
+        for (StoredOrderItem orderItem : order.getOrderItems()) {
+            stockReservationEngine.release(orderItem.getProduct(), orderItem.getQuantity(), paid);
+        }
+
+        if (order.getStatus() == OrderStatus.CREATED) {
+            afterCommit(orderMetrics::closed);
+        }
+        order.setStatus(OrderStatus.CANCELLED);
+        orderExpiryWheel.cancel(order.getId());
+        orderVersions.changed(order.getId());
+        StoredOrder cancelledOrder = ordersRepository.save(order);
+        orderViews.statusChanged(cancelledOrder);
+        orderOutbox.record(cancelledOrder, eventType);
+        return cancelledOrder;
+    }
 
-        for (StoredOrder order : expiredOrders) {
-            cancelOrder(order.getId());
+    // neither the wheel nor the metrics may see an order that could still be rolled back
+    private void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
         }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
     }
 
-    private List<Product> mapOrderItemsToProducts(StoredOrder order) {
+    // package-private for the mapping benchmark; lines render from their purchase snapshot, products are not loaded
+    static List<Product> mapOrderItemsToProducts(StoredOrder order) {
         return order.getOrderItems()
                 .stream()
                 .map(orderItem -> new Product(
-                        orderItem.getProduct().getId(),
-                        orderItem.getProduct().getName(),
+                        orderItem.getProductId(),
+                        orderItem.getProductName(),
                         orderItem.getQuantity(),
-                        orderItem.getProduct().getPricePerUnit()
+                        orderItem.getUnitPrice()
                 )).toList();
     }
 }
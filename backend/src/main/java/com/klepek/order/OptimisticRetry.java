@@ -0,0 +1,123 @@
+package com.klepek.order;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.springframework.aop.ProxyMethodInvocation;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.core.Ordered;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+
+// in optimistic mode a write that lost a version race is rolled back whole, so it is run again in a new transaction
+// after a jittered exponential backoff; ordered, so it wraps the transactional proxy and ServiceMetrics wraps it
+@Component
+public class OptimisticRetry implements BeanPostProcessor, Ordered {
+
+    private static final Set<String> RETRIED = Set.of("createOrder", "createOrders", "payOrder", "cancelOrder", "expireOrder");
+
+    private final ConcurrencyMode concurrencyMode;
+    private final int maxAttempts;
+    private final long backoffMs;
+    private final long maxBackoffMs;
+    // resolved lazily: a post-processor created this early must not pull in the registry before it is configured
+    private final ObjectProvider<MeterRegistry> meterRegistry;
+    private volatile Counter retries;
+
+    public OptimisticRetry(
+            @Value("${orders.concurrency.mode:PESSIMISTIC}") ConcurrencyMode concurrencyMode,
+            @Value("${orders.concurrency.max-attempts:5}") int maxAttempts,
+            @Value("${orders.concurrency.backoff-ms:2}") long backoffMs,
+            @Value("${orders.concurrency.max-backoff-ms:50}") long maxBackoffMs,
+            ObjectProvider<MeterRegistry> meterRegistry
+    ) {
+        this.concurrencyMode = concurrencyMode;
+        this.maxAttempts = maxAttempts;
+        this.backoffMs = backoffMs;
+        this.maxBackoffMs = maxBackoffMs;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public int getOrder() {
+        return Ordered.LOWEST_PRECEDENCE;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (concurrencyMode == ConcurrencyMode.OPTIMISTIC && bean instanceof OrderService orderService) {
+            return wrap(orderService, maxAttempts, backoffMs, maxBackoffMs, retries());
+        }
+        return bean;
+    }
+
+    // for callers that open their own transaction around an order service call, which then joins it instead of retrying
+    public <T> T call(Supplier<T> action) {
+        if (concurrencyMode != ConcurrencyMode.OPTIMISTIC) {
+            return action.get();
+        }
+        return retry(action::get, maxAttempts, backoffMs, maxBackoffMs, retries());
+    }
+
+    public static OrderService wrap(OrderService target, int maxAttempts, long backoffMs, long maxBackoffMs, Counter retries) {
+        ProxyFactory proxyFactory = new ProxyFactory();
+        proxyFactory.setTarget(target);
+        proxyFactory.addInterface(OrderService.class);
+        proxyFactory.addAdvice((MethodInterceptor) invocation -> {
+            // a conflict rolls back the enclosing transaction whole, only its owner can run it again
+            if (!RETRIED.contains(invocation.getMethod().getName())
+                    || TransactionSynchronizationManager.isActualTransactionActive()) {
+                return invocation.proceed();
+            }
+            ProxyMethodInvocation retryable = (ProxyMethodInvocation) invocation;
+            return retry(() -> retryable.invocableClone().proceed(), maxAttempts, backoffMs, maxBackoffMs, retries);
+        });
+        return (OrderService) proxyFactory.getProxy(OrderService.class.getClassLoader());
+    }
+
+    private static <T, E extends Throwable> T retry(Attempt<T, E> action, int maxAttempts, long backoffMs, long maxBackoffMs,
+                                                    Counter retries) throws E {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return action.run();
+            } catch (OptimisticLockingFailureException e) {
+                if (attempt >= maxAttempts) {
+                    throw e;
+                }
+                retries.increment();
+                backoff(attempt, backoffMs, maxBackoffMs, e);
+            }
+        }
+    }
+
+    private Counter retries() {
+        if (retries == null) {
+            retries = Counter.builder("orders.optimistic.retries").register(meterRegistry.getObject());
+        }
+        return retries;
+    }
+
+    // full jitter, so writers that collided do not collide again in step
+    private static void backoff(int attempt, long backoffMs, long maxBackoffMs, OptimisticLockingFailureException conflict) {
+        long cap = Math.min(maxBackoffMs, backoffMs << Math.min(attempt - 1, 20));
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(cap + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw conflict;
+        }
+    }
+
+    @FunctionalInterface
+    private interface Attempt<T, E extends Throwable> {
+        T run() throws E;
+    }
+}
@@ -0,0 +1,149 @@
+package com.klepek.order;
+
+import com.klepek.exceptions.OrdersBusyException;
+import com.klepek.model.Order;
+import com.klepek.model.OrderResult;
+import com.klepek.model.Product;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+// group commit for checkouts: orders are queued by their lowest product id and one writer per stripe creates
+// everything that arrived within the window through a single createOrders transaction, so a hot product is
+// reserved and written once per batch instead of once per order
+@Component
+@ConditionalOnProperty(name = "orders.coalescing.enabled", havingValue = "true")
+public class OrderCoalescer {
+
+    private final OrderService orderService;
+    private final long windowNanos;
+    private final int maxBatchSize;
+    private final long timeoutMs;
+    private final List<BlockingQueue<PendingOrder>> queues;
+    private final List<Thread> writers;
+    private volatile boolean running = true;
+
+    public OrderCoalescer(
+            OrderService orderService,
+            @Value("${orders.coalescing.stripes:4}") int stripes,
+            @Value("${orders.coalescing.window-ms:2}") long windowMs,
+            @Value("${orders.coalescing.max-batch-size:100}") int maxBatchSize,
+            @Value("${orders.coalescing.queue-capacity:1000}") int queueCapacity,
+            @Value("${orders.coalescing.timeout-ms:5000}") long timeoutMs
+    ) {
+        this.orderService = orderService;
+        this.windowNanos = TimeUnit.MILLISECONDS.toNanos(windowMs);
+        this.maxBatchSize = maxBatchSize;
+        this.timeoutMs = timeoutMs;
+        this.queues = new ArrayList<>(stripes);
+        this.writers = new ArrayList<>(stripes);
+        for (int i = 0; i < stripes; i++) {
+            BlockingQueue<PendingOrder> queue = new ArrayBlockingQueue<>(queueCapacity);
+            queues.add(queue);
+            writers.add(Thread.ofPlatform().daemon().name("order-coalescer-" + i).start(() -> drain(queue)));
+        }
+    }
+
+    // blocks until the batch holding the order has committed; a rejected order fails with the validation error
+    // of the batch, which is the exception createOrder would have thrown
+    public Order createOrder(Order order) {
+        if (!running) {
+            throw new IllegalStateException("Order coalescer is stopped");
+        }
+        PendingOrder pending = new PendingOrder(order, new CompletableFuture<>());
+        BlockingQueue<PendingOrder> queue = queues.get(stripe(order));
+        if (!queue.offer(pending)) {
+            throw new OrdersBusyException("Too many pending orders, retry later");
+        }
+        try {
+            return pending.result().get(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof RuntimeException cause ? cause : new IllegalStateException("Order batch failed", e.getCause());
+        } catch (TimeoutException e) {
+            // still queued means it was never written and can be retried; once taken by the writer the outcome is unknown
+            if (queue.remove(pending)) {
+                throw new OrdersBusyException("Order was not picked up within " + timeoutMs + " ms, retry later");
+            }
+            throw new IllegalStateException("Order batch did not complete within " + timeoutMs + " ms");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the order batch", e);
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        for (Thread writer : writers) {
+            writer.interrupt();
+        }
+        for (BlockingQueue<PendingOrder> queue : queues) {
+            List<PendingOrder> left = new ArrayList<>();
+            queue.drainTo(left);
+            fail(left, new IllegalStateException("Order coalescer is stopped"));
+        }
+    }
+
+    private int stripe(Order order) {
+        long lowest = order.products().stream().map(Product::id).filter(Objects::nonNull).mapToLong(Long::longValue).min().orElse(0);
+        return Math.floorMod(Long.hashCode(lowest), queues.size());
+    }
+
+    private void drain(BlockingQueue<PendingOrder> queue) {
+        List<PendingOrder> batch = new ArrayList<>(maxBatchSize);
+        try {
+            while (running) {
+                batch.add(queue.take());
+                long deadline = System.nanoTime() + windowNanos;
+                while (batch.size() < maxBatchSize) {
+                    PendingOrder next = queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                commit(batch);
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            fail(batch, new IllegalStateException("Order coalescer is stopped"));
+        }
+    }
+
+    private void commit(List<PendingOrder> batch) {
+        List<OrderResult> results;
+        try {
+            results = orderService.createOrders(batch.stream().map(PendingOrder::order).toList());
+        } catch (Throwable e) {
+            // an Error must not kill the stripe's writer either, the next batch may well succeed
+            fail(batch, e instanceof RuntimeException runtime ? runtime : new IllegalStateException("Order batch failed", e));
+            return;
+        }
+        for (OrderResult result : results) {
+            CompletableFuture<Order> pending = batch.get(result.index()).result();
+            if (result.order() != null) {
+                pending.complete(result.order());
+            } else {
+                pending.completeExceptionally(result.cause() != null ? result.cause() : new IllegalStateException(result.error()));
+            }
+        }
+    }
+
+    private static void fail(List<PendingOrder> pending, RuntimeException e) {
+        pending.forEach(order -> order.result().completeExceptionally(e));
+    }
+
+    private record PendingOrder(Order order, CompletableFuture<Order> result) {
+    }
+}
@@ -0,0 +1,127 @@
+package com.klepek.order;
+
+import com.klepek.model.OrderExpiry;
+import com.klepek.model.OrderStatus;
+import com.klepek.repository.OrdersRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@Component
+public class OrderExpirySweeper {
+
+    private static final Logger log = LoggerFactory.getLogger(OrderExpirySweeper.class);
+
+    private final OrdersRepository ordersRepository;
+    private final OrderService orderService;
+    private final OrderExpiryWheel orderExpiryWheel;
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+    private final Timer tickDuration;
+    private final Timer sweepDuration;
+    private final Counter expiredOnTick;
+    private final Counter expiredOnSweep;
+
+    public OrderExpirySweeper(
+            OrdersRepository ordersRepository,
+            OrderService orderService,
+            OrderExpiryWheel orderExpiryWheel,
+            PlatformTransactionManager transactionManager,
+            MeterRegistry meterRegistry,
+            @Value("${orders.expiry.batch-size:100}") int batchSize
+    ) {
+        this.ordersRepository = ordersRepository;
+        this.orderService = orderService;
+        this.orderExpiryWheel = orderExpiryWheel;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.batchSize = batchSize;
+        this.tickDuration = Timer.builder("orders.expiry.duration").tag("trigger", "tick").register(meterRegistry);
+        this.sweepDuration = Timer.builder("orders.expiry.duration").tag("trigger", "sweep").register(meterRegistry);
+        this.expiredOnTick = Counter.builder("orders.expired").tag("trigger", "tick").register(meterRegistry);
+        this.expiredOnSweep = Counter.builder("orders.expired").tag("trigger", "sweep").register(meterRegistry);
+    }
+
+    // orders still open after a restart are put back on the wheel before the first tick
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuildWheel() {
+        long afterId = 0;
+        while (true) {
+            List<OrderExpiry> expiries = ordersRepository.findOrderExpiries(OrderStatus.CREATED, afterId, PageRequest.of(0, batchSize));
+            expiries.forEach(expiry -> orderExpiryWheel.schedule(expiry.orderId(), expiry.expiresAt()));
+            if (expiries.size() < batchSize) {
+                log.info("Scheduled {} open orders for expiry", orderExpiryWheel.size());
+                return;
+            }
+            afterId = expiries.get(expiries.size() - 1).orderId();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${orders.expiry.tick-ms:1000}")
+    public void tick() {
+        long started = System.nanoTime();
+        int expired = expireDueOrders(LocalDateTime.now());
+        tickDuration.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+        expiredOnTick.increment(expired);
+    }
+
+    public int expireDueOrders(LocalDateTime now) {
+        List<Long> due = orderExpiryWheel.advance(now);
+        int expired = 0;
+        for (int from = 0; from < due.size(); from += batchSize) {
+            expired += expireBatch(due.subList(from, Math.min(from + batchSize, due.size())));
+        }
+        return expired;
+    }
+
+    // safety net for orders the wheel missed, e.g. when a commit callback never ran
+    @Scheduled(fixedDelayString = "${orders.expiry.sweep-interval-ms:300000}")
+    public void sweep() {
+        long started = System.nanoTime();
+        int expired = expireOrders(LocalDateTime.now());
+        sweepDuration.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+        expiredOnSweep.increment(expired);
+        if (expired > 0) {
+            log.info("Cancelled {} expired orders", expired);
+        }
+    }
+
+    // each page of expired ids is cancelled in its own transaction, so a sweep never holds more than one batch of locks
+    public int expireOrders(LocalDateTime now) {
+        int expired = 0;
+        long afterId = 0;
+
+        while (true) {
+            List<Long> ids = ordersRepository.findExpiredOrderIds(OrderStatus.CREATED, now, afterId, PageRequest.of(0, batchSize));
+            if (ids.isEmpty()) {
+                return expired;
+            }
+
+            expired += expireBatch(ids);
+
+            afterId = ids.get(ids.size() - 1);
+            if (ids.size() < batchSize) {
+                return expired;
+            }
+        }
+    }
+
+    private int expireBatch(List<Long> ids) {
+        Integer cancelled = transactionTemplate.execute(status ->
+                (int) ids.stream().filter(orderService::expireOrder).count());
+        return cancelled == null ? 0 : cancelled;
+    }
+}
@@ -0,0 +1,95 @@
+package com.klepek.order;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+// hashed timing wheel of open order expiries: scheduling and cancelling are O(1), advancing costs one slot per tick
+@Component
+public class OrderExpiryWheel {
+
+    // 4096 one-second slots cover the 30 minute reservation window without wrapping
+    private static final int WHEEL_SIZE = 4096;
+
+    private final long tickMillis;
+    private final List<Set<Long>> slots;
+    private final Map<Long, Long> deadlines = new ConcurrentHashMap<>();
+    private volatile long currentTick;
+
+    public OrderExpiryWheel(@Value("${orders.expiry.tick-ms:1000}") long tickMillis) {
+        this.tickMillis = tickMillis;
+        this.slots = new ArrayList<>(WHEEL_SIZE);
+        for (int i = 0; i < WHEEL_SIZE; i++) {
+            slots.add(ConcurrentHashMap.newKeySet());
+        }
+        this.currentTick = toTick(LocalDateTime.now());
+    }
+
+    public void schedule(Long orderId, LocalDateTime expiresAt) {
+        // the first tick that starts after expiresAt, so the order is already expired when it is handed out
+        long deadline = toTick(expiresAt) + 1;
+        cancel(orderId);
+        deadlines.put(orderId, deadline);
+        long tick = Math.max(deadline, currentTick + 1);
+        slots.get(slotIndex(tick)).add(orderId);
+        // advance may have moved the cursor onto or past that slot meanwhile and missed the id, so it goes into the
+        // slot after the cursor; whichever visit sees it first expires it, the other finds no deadline and drops it
+        while (tick <= currentTick) {
+            tick = currentTick + 1;
+            slots.get(slotIndex(tick)).add(orderId);
+        }
+    }
+
+    // an id left behind in a slot without a deadline is dropped the next time that slot is visited
+    public void cancel(Long orderId) {
+        Long deadline = deadlines.remove(orderId);
+        if (deadline != null) {
+            slots.get(slotIndex(deadline)).remove(orderId);
+        }
+    }
+
+    // called from a single scheduler thread; returns the ids whose deadline has passed. The cursor is moved onto a
+    // slot before the slot is read, so a concurrent schedule can tell whether it was too late for it
+    public List<Long> advance(LocalDateTime now) {
+        long targetTick = toTick(now);
+        List<Long> due = new ArrayList<>();
+        long firstTick = Math.max(currentTick + 1, targetTick - WHEEL_SIZE + 1);
+
+        for (long tick = firstTick; tick <= targetTick; tick++) {
+            currentTick = tick;
+            Iterator<Long> iterator = slots.get(slotIndex(tick)).iterator();
+            while (iterator.hasNext()) {
+                Long orderId = iterator.next();
+                Long deadline = deadlines.get(orderId);
+                if (deadline == null) {
+                    iterator.remove();
+                } else if (deadline <= targetTick && deadlines.remove(orderId, deadline)) {
+                    iterator.remove();
+                    due.add(orderId);
+                }
+            }
+        }
+
+        return due;
+    }
+
+    public int size() {
+        return deadlines.size();
+    }
+
+    private long toTick(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli() / tickMillis;
+    }
+
+    private int slotIndex(long tick) {
+        return (int) (tick & (WHEEL_SIZE - 1));
+    }
+}
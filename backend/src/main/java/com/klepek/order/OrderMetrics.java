@@ -0,0 +1,76 @@
+package com.klepek.order;
+
+import com.klepek.model.OrderStatus;
+import com.klepek.model.ReservedStock;
+import com.klepek.repository.OrdersRepository;
+import com.klepek.repository.ProductRepository;
+import com.klepek.stock.StockReservationEngine;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.springframework.stereotype.Component;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+// open orders are counted once at startup and then moved by committed status changes; reserved units are read from
+// the engine's per-product counters, so neither gauge queries the database on a scrape
+@Component
+public class OrderMetrics {
+
+    private final OrdersRepository ordersRepository;
+    private final ProductRepository productRepository;
+    private final StockReservationEngine stockReservationEngine;
+    private final MeterRegistry meterRegistry;
+    private final AtomicLong openOrders = new AtomicLong();
+    private final Set<Long> reservedGauges = ConcurrentHashMap.newKeySet();
+
+    public OrderMetrics(
+            OrdersRepository ordersRepository,
+            ProductRepository productRepository,
+            StockReservationEngine stockReservationEngine,
+            MeterRegistry meterRegistry
+    ) {
+        this.ordersRepository = ordersRepository;
+        this.productRepository = productRepository;
+        this.stockReservationEngine = stockReservationEngine;
+        this.meterRegistry = meterRegistry;
+        Gauge.builder("orders.open", openOrders, AtomicLong::get)
+                .description("Orders in status CREATED")
+                .register(meterRegistry);
+        stockReservationEngine.addListener((productId, available) -> registerReserved(productId, 0));
+    }
+
+    // runs after the engine reconciled the stored reservation counts
+    @PostConstruct
+    public void init() {
+        openOrders.set(ordersRepository.countByStatus(OrderStatus.CREATED));
+        for (ReservedStock reserved : productRepository.findReservedQuantities()) {
+            registerReserved(reserved.productId(), reserved.quantity());
+        }
+    }
+
+    public void opened() {
+        openOrders.incrementAndGet();
+    }
+
+    public void closed() {
+        openOrders.decrementAndGet();
+    }
+
+    // the stored count is only current until the engine first touches the product
+    private void registerReserved(Long productId, long stored) {
+        if (!reservedGauges.add(productId)) {
+            return;
+        }
+        Gauge.builder("stock.reserved", stockReservationEngine, engine -> {
+                    Integer reserved = engine.getReserved(productId);
+                    return reserved != null ? reserved : stored;
+                })
+                .tag("product", productId.toString())
+                .description("Units held by orders in status CREATED")
+                .baseUnit("units")
+                .register(meterRegistry);
+    }
+}
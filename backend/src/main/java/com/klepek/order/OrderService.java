@@ -1,18 +1,34 @@
 package com.klepek.order;
 
 import com.klepek.model.Order;
+import com.klepek.model.OrderPage;
+import com.klepek.model.OrderResult;
+import com.klepek.model.OrderStatus;
 
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.function.Consumer;
 
 public interface OrderService {
 
     Order getOrder(Long id);
 
+    // changes whenever the order returned by getOrder could have changed; cheap, never touches the database
+    String getOrderVersion(Long id);
+
     Order createOrder(Order order);
 
+    List<OrderResult> createOrders(List<Order> orders);
+
     Order payOrder(Long id);
 
     Order cancelOrder(Long id);
 
+    boolean expireOrder(Long id);
+
     List<Order> getAllOrders();
+
+    OrderPage getOrders(OrderStatus status, LocalDateTime createdFrom, LocalDateTime createdTo, String cursor, int limit);
+
+    void exportOrders(Consumer<Order> consumer);
 }
@@ -0,0 +1,41 @@
+package com.klepek.order;
+
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// revision counters for order reads; orders share a fixed number of slots, so a collision costs a spurious change, never a missed one
+@Component
+public class OrderVersions {
+
+    private static final int SLOTS = 1 << 16;
+
+    // distinguishes revisions handed out before a restart from the ones counted after it
+    private final long epoch = System.currentTimeMillis();
+    private final AtomicLongArray revisions = new AtomicLongArray(SLOTS);
+
+    public String current(Long orderId) {
+        return epoch + "-" + revisions.get(slot(orderId));
+    }
+
+    // bumped once right away and once when the transaction completes, so neither a read racing the commit
+    // nor a read of the pre-commit row can keep a version that outlives the change
+    public void changed(Long orderId) {
+        int slot = slot(orderId);
+        revisions.incrementAndGet(slot);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    revisions.incrementAndGet(slot);
+                }
+            });
+        }
+    }
+
+    private int slot(Long orderId) {
+        return Long.hashCode(orderId) & (SLOTS - 1);
+    }
+}
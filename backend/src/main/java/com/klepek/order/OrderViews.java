@@ -0,0 +1,104 @@
+package com.klepek.order;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.klepek.model.*;
+import com.klepek.repository.OrderViewsRepository;
+import com.klepek.repository.OrdersRepository;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+// keeps one precomputed row per order next to the normalized tables; the order service writes it in the same
+// transaction as the order, so readers get an order back from a single row without touching items or products
+@Component
+public class OrderViews {
+
+    private static final int BACKFILL_BATCH_SIZE = 500;
+    private static final TypeReference<List<Product>> PRODUCTS = new TypeReference<>() {};
+
+    private final OrderViewsRepository orderViewsRepository;
+    private final OrdersRepository ordersRepository;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate transactionTemplate;
+
+    public OrderViews(
+            OrderViewsRepository orderViewsRepository,
+            OrdersRepository ordersRepository,
+            ObjectMapper objectMapper,
+            PlatformTransactionManager transactionManager
+    ) {
+        this.orderViewsRepository = orderViewsRepository;
+        this.ordersRepository = ordersRepository;
+        this.objectMapper = objectMapper;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    public void created(StoredOrder order) {
+        orderViewsRepository.save(new StoredOrderView(order.getId(), order.getStatus(), order.getCreatedAt(), write(DefaultOrderService.mapOrderItemsToProducts(order))));
+    }
+
+    public void statusChanged(StoredOrder order) {
+        orderViewsRepository.updateStatus(order.getId(), order.getStatus());
+    }
+
+    public Optional<Order> find(Long id) {
+        return orderViewsRepository.findById(id).map(this::toOrder);
+    }
+
+    public List<Order> findAll() {
+        return orderViewsRepository.findAllOrdered().stream().map(this::toOrder).toList();
+    }
+
+    public List<Order> findPage(long afterId, OrderStatus status, LocalDateTime createdFrom, LocalDateTime createdTo, int limit) {
+        return orderViewsRepository.findPage(afterId, status, createdFrom, createdTo, PageRequest.of(0, limit)).stream()
+                .map(this::toOrder)
+                .toList();
+    }
+
+    // orders that existed before the read model get their row once at startup, a page per transaction
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfill() {
+        long afterId = 0;
+        while (true) {
+            long from = afterId;
+            List<StoredOrder> orders = transactionTemplate.execute(status -> {
+                List<StoredOrder> page = ordersRepository.findOrdersWithoutView(from, PageRequest.of(0, BACKFILL_BATCH_SIZE));
+                page.forEach(this::created);
+                return page;
+            });
+            if (orders == null || orders.size() < BACKFILL_BATCH_SIZE) {
+                return;
+            }
+            afterId = orders.get(orders.size() - 1).getId();
+        }
+    }
+
+    private Order toOrder(StoredOrderView view) {
+        return new Order(view.getId(), read(view.getItems()), view.getStatus());
+    }
+
+    private String write(List<Product> products) {
+        try {
+            return objectMapper.writeValueAsString(products);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot serialize order lines", e);
+        }
+    }
+
+    private List<Product> read(String items) {
+        try {
+            return objectMapper.readValue(items, PRODUCTS);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot read order lines", e);
+        }
+    }
+}
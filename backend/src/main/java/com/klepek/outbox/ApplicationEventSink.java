@@ -0,0 +1,24 @@
+package com.klepek.outbox;
+
+import com.klepek.model.OrderEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+// in-process consumers subscribe with @EventListener(OrderEvent.class); they run on the relay thread,
+// a listener that throws makes the batch go out again
+@Component
+public class ApplicationEventSink implements OrderEventSink {
+
+    private final ApplicationEventPublisher applicationEventPublisher;
+
+    public ApplicationEventSink(ApplicationEventPublisher applicationEventPublisher) {
+        this.applicationEventPublisher = applicationEventPublisher;
+    }
+
+    @Override
+    public void publish(List<OrderEvent> events) {
+        events.forEach(applicationEventPublisher::publishEvent);
+    }
+}
@@ -0,0 +1,53 @@
+package com.klepek.outbox;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.klepek.model.OrderEvent;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+// appends one JSON line per event and forces it to disk before the batch counts as delivered
+@Component
+@ConditionalOnProperty(name = "outbox.file.enabled", havingValue = "true")
+public class FileEventSink implements OrderEventSink {
+
+    private final ObjectMapper objectMapper;
+    private final Path path;
+
+    public FileEventSink(ObjectMapper objectMapper, @Value("${outbox.file.path:order-events.ndjson}") Path path) {
+        this.objectMapper = objectMapper;
+        this.path = path;
+    }
+
+    @Override
+    public void publish(List<OrderEvent> events) {
+        StringBuilder lines = new StringBuilder();
+        try {
+            for (OrderEvent event : events) {
+                lines.append(objectMapper.writeValueAsString(event)).append('\n');
+            }
+            if (path.getParent() != null) {
+                Files.createDirectories(path.getParent());
+            }
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+                ByteBuffer buffer = ByteBuffer.wrap(lines.toString().getBytes(StandardCharsets.UTF_8));
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                channel.force(false);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package com.klepek.outbox;
+
+import com.klepek.model.OrderEvent;
+import com.klepek.model.StoredOrderEvent;
+import com.klepek.repository.OrderEventsRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// drains the outbox in id order: a batch is handed to every sink and only deleted once all of them took it,
+// so a crash or a failing sink means redelivery, never loss; delivered rows are deleted rather than checkpointed,
+// so a row that commits after a higher id was relayed is still picked up by the next drain
+@Component
+public class OrderEventRelay {
+
+    private static final Logger log = LoggerFactory.getLogger(OrderEventRelay.class);
+
+    private final OrderEventsRepository orderEventsRepository;
+    private final List<OrderEventSink> sinks;
+    private final int batchSize;
+    private final long intervalMs;
+    // a slow sink must not hold up the stock flush and expiry ticks on the shared scheduler thread
+    private final ScheduledExecutorService executor =
+            Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().name("outbox-relay").daemon().factory());
+    private final Counter published;
+    private final Counter failures;
+    private volatile double lagSeconds;
+
+    public OrderEventRelay(
+            OrderEventsRepository orderEventsRepository,
+            List<OrderEventSink> sinks,
+            MeterRegistry meterRegistry,
+            @Value("${outbox.batch-size:100}") int batchSize,
+            @Value("${outbox.relay-interval-ms:500}") long intervalMs
+    ) {
+        this.orderEventsRepository = orderEventsRepository;
+        this.sinks = sinks;
+        this.batchSize = batchSize;
+        this.intervalMs = intervalMs;
+        this.published = Counter.builder("outbox.published").register(meterRegistry);
+        this.failures = Counter.builder("outbox.failures").register(meterRegistry);
+        Gauge.builder("outbox.lag", this, relay -> relay.lagSeconds)
+                .baseUnit("seconds")
+                .description("Age of the oldest order event not yet delivered to every sink")
+                .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        executor.scheduleWithFixedDelay(this::drain, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        executor.shutdown();
+    }
+
+    // nothing may escape: an exception thrown out of the scheduled task cancels every later run
+    public void drain() {
+        try {
+            relay();
+        } catch (RuntimeException e) {
+            failures.increment();
+            log.warn("Failed to relay order events, retrying on the next drain", e);
+        }
+        try {
+            updateLag();
+        } catch (RuntimeException e) {
+            log.warn("Failed to read the outbox lag", e);
+        }
+    }
+
+    private void relay() {
+        while (true) {
+            List<StoredOrderEvent> batch = orderEventsRepository.findOldest(PageRequest.of(0, batchSize));
+            if (batch.isEmpty()) {
+                return;
+            }
+
+            List<OrderEvent> events = batch.stream().map(StoredOrderEvent::toOrderEvent).toList();
+            for (OrderEventSink sink : sinks) {
+                sink.publish(events);
+            }
+            orderEventsRepository.deleteAllByIdInBatch(events.stream().map(OrderEvent::eventId).toList());
+            published.increment(events.size());
+
+            if (batch.size() < batchSize) {
+                return;
+            }
+        }
+    }
+
+    private void updateLag() {
+        LocalDateTime oldest = orderEventsRepository.findOldestOccurredAt();
+        lagSeconds = oldest == null ? 0 : Duration.between(oldest, LocalDateTime.now()).toMillis() / 1_000.0;
+    }
+}
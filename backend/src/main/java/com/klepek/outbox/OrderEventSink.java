@@ -0,0 +1,12 @@
+package com.klepek.outbox;
+
+import com.klepek.model.OrderEvent;
+
+import java.util.List;
+
+// a batch either reaches the sink completely or the call throws; the relay then retries the whole batch,
+// so sinks see every event at least once and may see one again
+public interface OrderEventSink {
+
+    void publish(List<OrderEvent> events);
+}
@@ -0,0 +1,25 @@
+package com.klepek.outbox;
+
+import com.klepek.model.OrderEventType;
+import com.klepek.model.StoredOrder;
+import com.klepek.model.StoredOrderEvent;
+import com.klepek.repository.OrderEventsRepository;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+@Component
+public class OrderOutbox {
+
+    private final OrderEventsRepository orderEventsRepository;
+
+    public OrderOutbox(OrderEventsRepository orderEventsRepository) {
+        this.orderEventsRepository = orderEventsRepository;
+    }
+
+    // the event commits or rolls back with the status change it describes
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void record(StoredOrder order, OrderEventType type) {
+        orderEventsRepository.save(new StoredOrderEvent(order.getId(), type, order.getStatus()));
+    }
+}
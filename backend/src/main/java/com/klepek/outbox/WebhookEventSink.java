@@ -0,0 +1,52 @@
+package com.klepek.outbox;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.klepek.model.OrderEvent;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestClient;
+
+import java.util.List;
+
+// posts each batch as one JSON array; any non-2xx answer or timeout fails the batch and it is posted again
+@Component
+@ConditionalOnProperty(name = "outbox.webhook.url")
+public class WebhookEventSink implements OrderEventSink {
+
+    private final ObjectMapper objectMapper;
+    private final RestClient restClient;
+
+    public WebhookEventSink(
+            ObjectMapper objectMapper,
+            @Value("${outbox.webhook.url}") String url,
+            @Value("${outbox.webhook.timeout-ms:5000}") int timeoutMillis
+    ) {
+        SimpleClientHttpRequestFactory requestFactory = new SimpleClientHttpRequestFactory();
+        requestFactory.setConnectTimeout(timeoutMillis);
+        requestFactory.setReadTimeout(timeoutMillis);
+        this.objectMapper = objectMapper;
+        this.restClient = RestClient.builder()
+                .baseUrl(url)
+                .requestFactory(requestFactory)
+                .build();
+    }
+
+    @Override
+    public void publish(List<OrderEvent> events) {
+        byte[] body;
+        try {
+            body = objectMapper.writeValueAsBytes(events);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+        restClient.post()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(body)
+                .retrieve()
+                .toBodilessEntity();
+    }
+}
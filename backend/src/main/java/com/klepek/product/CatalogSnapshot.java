@@ -0,0 +1,9 @@
+package com.klepek.product;
+
+import com.klepek.model.Product;
+
+import java.util.List;
+
+// the product list together with the catalog version it was read at
+public record CatalogSnapshot(String version, List<Product> products) {
+}
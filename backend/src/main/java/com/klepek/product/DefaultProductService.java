@@ -1,29 +1,40 @@
 package com.klepek.product;
 
 import com.klepek.model.Product;
+import com.klepek.model.StockLevel;
 import com.klepek.model.StoredProduct;
-import com.klepek.model.OrderStatus;
 import com.klepek.repository.ProductRepository;
-import com.klepek.repository.OrderItemsRepository;
+import com.klepek.stock.StockReservationEngine;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 @Service
 public class DefaultProductService implements ProductService {
 
     private final ProductRepository productRepository;
-    private final OrderItemsRepository orderItemsRepository;
+    private final StockReservationEngine stockReservationEngine;
+    private final ProductCatalog productCatalog;
 
-    public DefaultProductService(ProductRepository productRepository, OrderItemsRepository orderItemsRepository) {
+    public DefaultProductService(
+            ProductRepository productRepository,
+            StockReservationEngine stockReservationEngine,
+            ProductCatalog productCatalog
+    ) {
         this.productRepository = productRepository;
-        this.orderItemsRepository = orderItemsRepository;
+        this.stockReservationEngine = stockReservationEngine;
+        this.productCatalog = productCatalog;
     }
 
     @Override
     public Product createProduct(Product product) {
         StoredProduct storedProduct = new StoredProduct(product.name(), product.quantity(), product.pricePerUnit());
         productRepository.save(storedProduct);
+        productCatalog.invalidate();
         return new Product(storedProduct.getId(), storedProduct.getName(), storedProduct.getStockQuantity(), storedProduct.getPricePerUnit());
     }
 
@@ -37,33 +48,64 @@ public class DefaultProductService implements ProductService {
         storedProduct.setPricePerUnit(product.pricePerUnit());
 
         StoredProduct updatedProduct = productRepository.save(storedProduct);
+        stockReservationEngine.evict(updatedProduct.getId());
+        productCatalog.invalidate();
         return new Product(updatedProduct.getId(), updatedProduct.getName(), updatedProduct.getStockQuantity(), updatedProduct.getPricePerUnit());
     }
 
     @Override
     public List<Product> getAllProducts() {
-        return productRepository.findAll().stream()
-                .map(storedProduct -> new Product(
-                        storedProduct.getId(),
-                        storedProduct.getName(),
-                        storedProduct.getStockQuantity(),
-                        storedProduct.getPricePerUnit())
-                )
-                .toList();
+        return productCatalog.getProducts();
     }
 
+    @Override
+    public CatalogSnapshot getCatalog() {
+        return productCatalog.getSnapshot();
+    }
+
+    @Override
+    public String getCatalogVersion() {
+        return productCatalog.version();
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public void exportProducts(Consumer<Product> consumer) {
+        try (Stream<Product> products = productRepository.streamAll()) {
+            products.forEach(consumer);
+        }
+    }
+
+    // the engine's counter is current for every product touched since startup, the stored column for all others
     @Override
     public boolean deleteProduct(Long id) {
-        boolean hasActiveOrders = orderItemsRepository.existsByProductIdAndOrderStatusNot(id, OrderStatus.CANCELLED);
+        Optional<StoredProduct> storedProduct = productRepository.findById(id);
+        if (storedProduct.isEmpty()) {
+            return false;
+        }
 
-        if (hasActiveOrders) {
+        Integer activeOrderLines = stockReservationEngine.getActiveOrderLines(id);
+        if ((activeOrderLines != null ? activeOrderLines : storedProduct.get().getActiveOrderLines()) > 0) {
             throw new IllegalStateException("Product has active orders and cannot be deleted");
         }
 
-        if (productRepository.existsById(id)) {
-            productRepository.deleteById(id);
-            return true;
+        productRepository.delete(storedProduct.get());
+        stockReservationEngine.remove(id);
+        productCatalog.invalidate();
+        return true;
+    }
+
+    @Override
+    public Optional<StockLevel> getStockLevel(Long id) {
+        Integer available = stockReservationEngine.getAvailable(id);
+        Integer reserved = stockReservationEngine.getReserved(id);
+        if (available != null && reserved != null) {
+            return Optional.of(new StockLevel(id, available, reserved));
         }
-        return false;
+        return productRepository.findById(id).map(storedProduct -> new StockLevel(
+                id,
+                available != null ? available : storedProduct.getStockQuantity(),
+                reserved != null ? reserved : storedProduct.getReservedQuantity()
+        ));
     }
 }
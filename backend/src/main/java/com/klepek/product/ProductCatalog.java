@@ -0,0 +1,206 @@
+package com.klepek.product;
+
+import com.klepek.model.Product;
+import com.klepek.model.StoredProduct;
+import com.klepek.repository.ProductRepository;
+import com.klepek.stock.StockReservationEngine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.StampedLock;
+
+// immutable snapshot of the product list, rebuilt on the first read after a product change; stock changes only land in a
+// per-product map and are folded into a new copy of the list by the next read, so a reservation never copies the catalog
+@Component
+public class ProductCatalog {
+
+    private final ProductRepository productRepository;
+    private final StockReservationEngine stockReservationEngine;
+    private final long epoch = System.currentTimeMillis();
+    private final AtomicReference<Snapshot> snapshot = new AtomicReference<>(Snapshot.EMPTY);
+    private final Map<Long, Integer> stockLevels = new ConcurrentHashMap<>();
+    private final AtomicLong stockChanges = new AtomicLong();
+    // a list copy sees the levels of exactly the change count it is tagged with
+    private final StampedLock stockLock = new StampedLock();
+    private final ReentrantLock rebuildLock = new ReentrantLock();
+    private final Counter hits;
+    private final Counter misses;
+
+    public ProductCatalog(
+            ProductRepository productRepository,
+            StockReservationEngine stockReservationEngine,
+            MeterRegistry meterRegistry
+    ) {
+        this.productRepository = productRepository;
+        this.stockReservationEngine = stockReservationEngine;
+        this.hits = Counter.builder("catalog.requests").tag("result", "hit").register(meterRegistry);
+        this.misses = Counter.builder("catalog.requests").tag("result", "miss").register(meterRegistry);
+        Gauge.builder("catalog.hit.ratio", this, ProductCatalog::hitRatio).register(meterRegistry);
+        Gauge.builder("catalog.snapshot.age", this, ProductCatalog::snapshotAgeSeconds)
+                .baseUnit("seconds")
+                .register(meterRegistry);
+        stockReservationEngine.addListener(this::patchStock);
+    }
+
+    public List<Product> getProducts() {
+        return getSnapshot().products();
+    }
+
+    // the version always belongs to the returned list, so it can be handed out as a validator for it
+    public CatalogSnapshot getSnapshot() {
+        Snapshot current = snapshot.get();
+        if (!current.stale) {
+            hits.increment();
+            return withCurrentStock(current).toCatalogSnapshot(epoch);
+        }
+        misses.increment();
+        return withCurrentStock(rebuild()).toCatalogSnapshot(epoch);
+    }
+
+    public String version() {
+        return Snapshot.version(epoch, snapshot.get().version, stockChanges.get());
+    }
+
+    // product rows changed: the next read reloads them, once the change is visible to other transactions
+    public void invalidate() {
+        runAfterCommit(() -> snapshot.updateAndGet(Snapshot::invalidated));
+    }
+
+    // one reader rebuilds while the others wait for its snapshot instead of all hitting the database
+    private Snapshot rebuild() {
+        rebuildLock.lock();
+        try {
+            return rebuildLocked();
+        } finally {
+            rebuildLock.unlock();
+        }
+    }
+
+    private Snapshot rebuildLocked() {
+        Snapshot current = snapshot.get();
+        if (!current.stale) {
+            return current;
+        }
+
+        List<StoredProduct> storedProducts = productRepository.findAll();
+        List<Product> products = new ArrayList<>(storedProducts.size());
+        Set<Long> ids = new HashSet<>();
+        long changes;
+        long stamp = stockLock.writeLock();
+        try {
+            for (StoredProduct storedProduct : storedProducts) {
+                // unflushed reservations only exist in the engine, so its counter wins over the stored quantity
+                Integer available = stockReservationEngine.getAvailable(storedProduct.getId());
+                int quantity = available != null ? available : storedProduct.getStockQuantity();
+                stockLevels.put(storedProduct.getId(), quantity);
+                ids.add(storedProduct.getId());
+                products.add(new Product(storedProduct.getId(), storedProduct.getName(), quantity, storedProduct.getPricePerUnit()));
+            }
+            stockLevels.keySet().retainAll(ids);
+            changes = stockChanges.incrementAndGet();
+        } finally {
+            stockLock.unlockWrite(stamp);
+        }
+
+        Snapshot rebuilt = new Snapshot(current.version + 1, List.copyOf(products), System.nanoTime(), false, changes);
+        // an invalidate that raced with the load wins, the caller still gets what was read under the stale version
+        if (!snapshot.compareAndSet(current, rebuilt)) {
+            return new Snapshot(current.version, rebuilt.products, rebuilt.builtAt, true, changes);
+        }
+        return rebuilt;
+    }
+
+    private void patchStock(Long productId, int available) {
+        long stamp = stockLock.writeLock();
+        try {
+            Integer previous = stockLevels.put(productId, available);
+            if (previous == null || previous != available) {
+                stockChanges.incrementAndGet();
+            }
+        } finally {
+            stockLock.unlockWrite(stamp);
+        }
+    }
+
+    private Snapshot withCurrentStock(Snapshot current) {
+        if (current.stockChanges == stockChanges.get()) {
+            return current;
+        }
+
+        List<Product> products = new ArrayList<>(current.products.size());
+        boolean changed = false;
+        long changes;
+        long stamp = stockLock.readLock();
+        try {
+            changes = stockChanges.get();
+            for (Product product : current.products) {
+                Integer available = stockLevels.get(product.id());
+                if (available != null && available != product.quantity()) {
+                    products.add(new Product(product.id(), product.name(), available, product.pricePerUnit()));
+                    changed = true;
+                } else {
+                    products.add(product);
+                }
+            }
+        } finally {
+            stockLock.unlockRead(stamp);
+        }
+        Snapshot patched = new Snapshot(current.version, changed ? List.copyOf(products) : current.products,
+                current.builtAt, current.stale, changes);
+        snapshot.compareAndSet(current, patched);
+        return patched;
+    }
+
+    private double hitRatio() {
+        double total = hits.count() + misses.count();
+        return total == 0 ? 1.0 : hits.count() / total;
+    }
+
+    private double snapshotAgeSeconds() {
+        Snapshot current = snapshot.get();
+        return current.products == null ? 0 : (System.nanoTime() - current.builtAt) / 1_000_000_000.0;
+    }
+
+    private void runAfterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    private record Snapshot(long version, List<Product> products, long builtAt, boolean stale, long stockChanges) {
+
+        private static final Snapshot EMPTY = new Snapshot(0, null, 0, true, 0);
+
+        private static String version(long epoch, long version, long stockChanges) {
+            return epoch + "-" + version + "-" + stockChanges;
+        }
+
+        private CatalogSnapshot toCatalogSnapshot(long epoch) {
+            return new CatalogSnapshot(version(epoch, version, stockChanges), products);
+        }
+
+        private Snapshot invalidated() {
+            return new Snapshot(version + 1, products, builtAt, true, stockChanges);
+        }
+    }
+}
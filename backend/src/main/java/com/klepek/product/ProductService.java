@@ -1,12 +1,19 @@
 package com.klepek.product;
 
 import com.klepek.model.Product;
+import com.klepek.model.StockLevel;
 
 import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
 
 public interface ProductService {
     Product createProduct(Product product);
     Product updateProduct(Product product);
     List<Product> getAllProducts();
+    CatalogSnapshot getCatalog();
+    String getCatalogVersion();
     boolean deleteProduct(Long id);
+    Optional<StockLevel> getStockLevel(Long id);
+    void exportProducts(Consumer<Product> consumer);
 }
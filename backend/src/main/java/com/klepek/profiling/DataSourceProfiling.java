@@ -0,0 +1,22 @@
+package com.klepek.profiling;
+
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+
+// replaces show-sql: every statement is counted instead of logged; only with profiling.datasource (the "profiling"
+// profile), since the proxies put a reflective call on every JDBC method, row fetches included
+@Component
+@ConditionalOnProperty(name = "profiling.datasource", havingValue = "true")
+public class DataSourceProfiling implements BeanPostProcessor {
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (bean instanceof DataSource dataSource && !(bean instanceof ProfilingDataSource)) {
+            return new ProfilingDataSource(dataSource);
+        }
+        return bean;
+    }
+}
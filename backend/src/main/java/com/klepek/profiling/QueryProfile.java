@@ -0,0 +1,60 @@
+package com.klepek.profiling;
+
+// running totals of the database and lock work done on the current thread; callers read them before and after
+// a unit of work and take the difference, so nested units never have to reset or share anything
+public final class QueryProfile {
+
+    private static final ThreadLocal<QueryProfile> CURRENT = ThreadLocal.withInitial(QueryProfile::new);
+
+    private long statements;
+    private long rows;
+    private long sqlNanos;
+    private long lockWaitNanos;
+
+    private QueryProfile() {
+    }
+
+    public static QueryProfile current() {
+        return CURRENT.get();
+    }
+
+    public long statements() {
+        return statements;
+    }
+
+    public long rows() {
+        return rows;
+    }
+
+    public long sqlNanos() {
+        return sqlNanos;
+    }
+
+    public long lockWaitNanos() {
+        return lockWaitNanos;
+    }
+
+    public Usage usage() {
+        return new Usage(statements, rows, sqlNanos, lockWaitNanos);
+    }
+
+    public Usage since(Usage start) {
+        return new Usage(statements - start.statements, rows - start.rows, sqlNanos - start.sqlNanos, lockWaitNanos - start.lockWaitNanos);
+    }
+
+    void statementExecuted(long nanos) {
+        statements++;
+        sqlNanos += nanos;
+    }
+
+    void rowFetched() {
+        rows++;
+    }
+
+    public void lockWaited(long nanos) {
+        lockWaitNanos += nanos;
+    }
+
+    public record Usage(long statements, long rows, long sqlNanos, long lockWaitNanos) {
+    }
+}
@@ -0,0 +1,59 @@
+package com.klepek.profiling;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.MethodParameter;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.http.server.ServletServerHttpRequest;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyAdvice;
+
+import java.util.Locale;
+
+// debug mode (the "profiling" profile): the counts so far are added as headers just before the body is written,
+// which is after the controller and its service calls have run; streamed bodies only see the work done before streaming
+@ControllerAdvice
+public class QueryProfileHeaders implements ResponseBodyAdvice<Object> {
+
+    public static final String STATEMENTS = "X-Sql-Statements";
+    public static final String ROWS = "X-Sql-Rows";
+    public static final String SQL_TIME = "X-Sql-Time-Ms";
+    public static final String LOCK_WAIT = "X-Stock-Lock-Wait-Ms";
+
+    private final boolean enabled;
+
+    public QueryProfileHeaders(@Value("${profiling.headers:false}") boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    @Override
+    public boolean supports(MethodParameter returnType, Class<? extends HttpMessageConverter<?>> converterType) {
+        return enabled;
+    }
+
+    @Override
+    public Object beforeBodyWrite(
+            Object body,
+            MethodParameter returnType,
+            MediaType selectedContentType,
+            Class<? extends HttpMessageConverter<?>> selectedConverterType,
+            ServerHttpRequest request,
+            ServerHttpResponse response
+    ) {
+        if (request instanceof ServletServerHttpRequest servletRequest
+                && servletRequest.getServletRequest().getAttribute(QueryProfilingFilter.START_ATTRIBUTE) instanceof QueryProfile.Usage start) {
+            QueryProfile.Usage usage = QueryProfile.current().since(start);
+            response.getHeaders().set(STATEMENTS, Long.toString(usage.statements()));
+            response.getHeaders().set(ROWS, Long.toString(usage.rows()));
+            response.getHeaders().set(SQL_TIME, millis(usage.sqlNanos()));
+            response.getHeaders().set(LOCK_WAIT, millis(usage.lockWaitNanos()));
+        }
+        return body;
+    }
+
+    private static String millis(long nanos) {
+        return String.format(Locale.ROOT, "%.3f", nanos / 1_000_000.0);
+    }
+}
@@ -0,0 +1,88 @@
+package com.klepek.profiling;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+// aggregates the database and lock work of each request per route, so an endpoint whose statement count
+// grows with the size of its response shows up in the metrics instead of the logs; the SQL meters need the profiled
+// DataSource (profiling.datasource), without it only the stock lock wait is recorded. That is the wait for the stock
+// engine's stripe locks; a wait for a database row lock happens inside a statement and is part of http.sql.time
+@Component
+public class QueryProfilingFilter extends OncePerRequestFilter {
+
+    static final String START_ATTRIBUTE = QueryProfilingFilter.class.getName() + ".start";
+
+    private final MeterRegistry meterRegistry;
+    private final boolean sqlProfiled;
+    private final Map<RouteKey, RouteMeters> routes = new ConcurrentHashMap<>();
+
+    public QueryProfilingFilter(
+            ObjectProvider<MeterRegistry> meterRegistry,
+            @Value("${profiling.datasource:false}") boolean sqlProfiled
+    ) {
+        this.meterRegistry = meterRegistry.getIfAvailable(() -> Metrics.globalRegistry);
+        this.sqlProfiled = sqlProfiled;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        QueryProfile profile = QueryProfile.current();
+        QueryProfile.Usage start = profile.usage();
+        request.setAttribute(START_ATTRIBUTE, start);
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            record(request, profile.since(start));
+        }
+    }
+
+    private void record(HttpServletRequest request, QueryProfile.Usage usage) {
+        Object route = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        RouteKey key = new RouteKey(request.getMethod(), route == null ? "UNKNOWN" : route.toString());
+        RouteMeters meters = routes.computeIfAbsent(key, this::register);
+        if (meters.statements != null) {
+            meters.statements.record(usage.statements());
+            meters.rows.record(usage.rows());
+            meters.sqlTime.record(usage.sqlNanos(), TimeUnit.NANOSECONDS);
+        }
+        meters.lockWait.record(usage.lockWaitNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    private RouteMeters register(RouteKey key) {
+        Tags tags = Tags.of("method", key.method(), "uri", key.uri());
+        Timer lockWait = Timer.builder("http.stock.lock.wait").tags(tags).register(meterRegistry);
+        if (!sqlProfiled) {
+            return new RouteMeters(null, null, null, lockWait);
+        }
+        return new RouteMeters(
+                DistributionSummary.builder("http.sql.statements").tags(tags).register(meterRegistry),
+                DistributionSummary.builder("http.sql.rows").tags(tags).register(meterRegistry),
+                Timer.builder("http.sql.time").tags(tags).register(meterRegistry),
+                lockWait
+        );
+    }
+
+    private record RouteKey(String method, String uri) {
+    }
+
+    private record RouteMeters(DistributionSummary statements, DistributionSummary rows, Timer sqlTime, Timer lockWait) {
+    }
+}
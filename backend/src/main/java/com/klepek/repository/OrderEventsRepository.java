@@ -0,0 +1,18 @@
+package com.klepek.repository;
+
+import com.klepek.model.StoredOrderEvent;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface OrderEventsRepository extends JpaRepository<StoredOrderEvent, Long> {
+
+    @Query("select e from StoredOrderEvent e order by e.id")
+    List<StoredOrderEvent> findOldest(Pageable page);
+
+    @Query("select min(e.occurredAt) from StoredOrderEvent e")
+    LocalDateTime findOldestOccurredAt();
+}
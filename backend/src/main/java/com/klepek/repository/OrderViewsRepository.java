@@ -0,0 +1,37 @@
+package com.klepek.repository;
+
+import com.klepek.model.OrderStatus;
+import com.klepek.model.StoredOrderView;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface OrderViewsRepository extends JpaRepository<StoredOrderView, Long> {
+
+    @Query("select v from StoredOrderView v order by v.id")
+    List<StoredOrderView> findAllOrdered();
+
+    // keyset page, null filters are ignored
+    @Query("select v from StoredOrderView v " +
+            "where v.id > :afterId " +
+            "and (:status is null or v.status = :status) " +
+            "and (:createdFrom is null or v.createdAt >= :createdFrom) " +
+            "and (:createdTo is null or v.createdAt < :createdTo) " +
+            "order by v.id")
+    List<StoredOrderView> findPage(
+            @Param("afterId") Long afterId,
+            @Param("status") OrderStatus status,
+            @Param("createdFrom") LocalDateTime createdFrom,
+            @Param("createdTo") LocalDateTime createdTo,
+            Pageable page
+    );
+
+    @Modifying
+    @Query("update StoredOrderView v set v.status = :status where v.id = :id")
+    int updateStatus(@Param("id") Long id, @Param("status") OrderStatus status);
+}
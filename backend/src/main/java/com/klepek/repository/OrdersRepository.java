@@ -1,17 +1,64 @@
 package com.klepek.repository;
 
+import com.klepek.model.OrderExpiry;
+import com.klepek.model.OrderLine;
+import com.klepek.model.OrderStatus;
 import com.klepek.model.StoredOrder;
 import jakarta.persistence.LockModeType;
-import jakarta.validation.constraints.NotNull;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface OrdersRepository extends JpaRepository<StoredOrder, Long> {
-    @Override
+    // pessimistic concurrency mode: the row stays share-locked until the paying or cancelling transaction ends
     @Lock(LockModeType.PESSIMISTIC_READ)
-    Optional<StoredOrder> findById(@NotNull Long id);
+    @Query("select o from StoredOrder o where o.id = :id")
+    Optional<StoredOrder> findLockedById(@Param("id") Long id);
+
+    // orders written before the order_views read model existed, with what is needed to build their row
+    @EntityGraph(attributePaths = {"orderItems"})
+    @Query("select o from StoredOrder o " +
+            "where o.id > :afterId and not exists (select v.id from StoredOrderView v where v.id = o.id) " +
+            "order by o.id")
+    List<StoredOrder> findOrdersWithoutView(@Param("afterId") Long afterId, Pageable page);
+
+    // keyset page over idx_orders_status_expires_at, callers pass the last id of the previous page
+    @Query("select o.id from StoredOrder o " +
+            "where o.status = :status and o.expiresAt < :now and o.id > :afterId " +
+            "order by o.id")
+    List<Long> findExpiredOrderIds(
+            @Param("status") OrderStatus status,
+            @Param("now") LocalDateTime now,
+            @Param("afterId") Long afterId,
+            Pageable page
+    );
+
+    @Query("select new com.klepek.model.OrderExpiry(o.id, o.expiresAt) from StoredOrder o " +
+            "where o.status = :status and o.id > :afterId " +
+            "order by o.id")
+    List<OrderExpiry> findOrderExpiries(
+            @Param("status") OrderStatus status,
+            @Param("afterId") Long afterId,
+            Pageable page
+    );
+
+    long countByStatus(OrderStatus status);
+
+    @QueryHints(@QueryHint(name = "org.hibernate.fetchSize", value = "500"))
+    @Query("select new com.klepek.model.OrderLine(o.id, o.status, i.product.id, i.productName, i.quantity, i.unitPrice) " +
+            "from StoredOrder o join o.orderItems i " +
+            "order by o.id, i.id")
+    Stream<OrderLine> streamOrderLines();
 }
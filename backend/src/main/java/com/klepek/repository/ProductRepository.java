@@ -1,16 +1,54 @@
 package com.klepek.repository;
 
+import com.klepek.model.Product;
+import com.klepek.model.ReservedStock;
 import com.klepek.model.StoredProduct;
+import jakarta.persistence.QueryHint;
 import org.springframework.data.jpa.repository.JpaRepository;
-import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
-import jakarta.persistence.LockModeType;
-import java.util.Optional;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.stream.Stream;
 
 @Repository
-public interface ProductRepository extends JpaRepository<StoredProduct, Long> {
+public interface ProductRepository extends JpaRepository<StoredProduct, Long>, ProductStockRepository {
+
+    // returns 0 when the product does not exist or has less than the requested quantity in stock
+    @Transactional
+    @Modifying
+    @Query("update StoredProduct p set p.stockQuantity = p.stockQuantity - :quantity " +
+            "where p.id = :id and p.stockQuantity >= :quantity")
+    int decrementStock(@Param("id") Long id, @Param("quantity") int quantity);
+
+    @Transactional
+    @Modifying
+    @Query("update StoredProduct p set p.stockQuantity = p.stockQuantity + :quantity where p.id = :id")
+    int incrementStock(@Param("id") Long id, @Param("quantity") int quantity);
+
+    @Query("select p.stockQuantity from StoredProduct p where p.id = :id")
+    Integer findStockQuantity(@Param("id") Long id);
+
+    @Query("select new com.klepek.model.ReservedStock(p.id, p.reservedQuantity) from StoredProduct p where p.reservedQuantity > 0")
+    List<ReservedStock> findReservedQuantities();
+
+    // same as the V2 migration: units held by unpaid orders and the lines of orders that were not cancelled
+    @Transactional
+    @Modifying
+    @Query(value = "update products set " +
+            "reserved_quantity = coalesce((select sum(i.quantity) from order_items i join orders o on o.id = i.order_id " +
+            "where i.product_id = products.id and o.status = 'CREATED'), 0), " +
+            "active_order_lines = (select count(*) from order_items i join orders o on o.id = i.order_id " +
+            "where i.product_id = products.id and o.status <> 'CANCELLED')", nativeQuery = true)
+    int reconcileReservationCounters();
 
-    @Override
-    @Lock(LockModeType.PESSIMISTIC_READ)
-    Optional<StoredProduct> findById(Long id);
+    // forward-only cursor of unmanaged records, must be consumed inside a transaction and closed
+    @QueryHints(@QueryHint(name = "org.hibernate.fetchSize", value = "500"))
+    @Query("select new com.klepek.model.Product(p.id, p.name, p.stockQuantity, p.pricePerUnit) " +
+            "from StoredProduct p order by p.id")
+    Stream<Product> streamAll();
 }
@@ -0,0 +1,13 @@
+package com.klepek.repository;
+
+import com.klepek.model.StockDelta;
+
+import java.util.List;
+import java.util.Map;
+
+public interface ProductStockRepository {
+
+    // applies every delta in one JDBC batch; returns the ids whose delta would have taken stock below zero,
+    // their rows are left unchanged
+    List<Long> applyStockDeltas(Map<Long, StockDelta> deltas);
+}
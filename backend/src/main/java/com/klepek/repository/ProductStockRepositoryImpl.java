@@ -0,0 +1,66 @@
+package com.klepek.repository;
+
+import com.klepek.model.StockDelta;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+class ProductStockRepositoryImpl implements ProductStockRepository {
+
+    private static final String APPLY_DELTA =
+            "update products set stock_quantity = stock_quantity + ?, reserved_quantity = reserved_quantity + ?, " +
+                    "active_order_lines = active_order_lines + ? where id = ? and stock_quantity + ? >= 0";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    ProductStockRepositoryImpl(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    @Transactional
+    public List<Long> applyStockDeltas(Map<Long, StockDelta> deltas) {
+        if (deltas.isEmpty()) {
+            return List.of();
+        }
+        // plain JDBC bypasses Hibernate's auto flush, so pending inserts have to reach the table first, as they would for a JPQL update
+        entityManager.flush();
+
+        List<Map.Entry<Long, StockDelta>> entries = new ArrayList<>(deltas.entrySet());
+        int[] updated = jdbcTemplate.batchUpdate(APPLY_DELTA, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement statement, int i) throws SQLException {
+                StockDelta delta = entries.get(i).getValue();
+                statement.setInt(1, delta.stock());
+                statement.setInt(2, delta.reserved());
+                statement.setInt(3, delta.activeOrderLines());
+                statement.setLong(4, entries.get(i).getKey());
+                statement.setInt(5, delta.stock());
+            }
+
+            @Override
+            public int getBatchSize() {
+                return entries.size();
+            }
+        });
+
+        List<Long> rejected = new ArrayList<>();
+        for (int i = 0; i < updated.length; i++) {
+            if (updated[i] == 0) {
+                rejected.add(entries.get(i).getKey());
+            }
+        }
+        return rejected;
+    }
+}
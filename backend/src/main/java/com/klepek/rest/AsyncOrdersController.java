@@ -0,0 +1,136 @@
+package com.klepek.rest;
+
+import com.klepek.exceptions.IdempotencyKeyReusedException;
+import com.klepek.exceptions.OrdersBusyException;
+import com.klepek.model.Order;
+import com.klepek.model.OrderPage;
+import com.klepek.model.OrderResult;
+import com.klepek.model.OrderStatus;
+import com.klepek.order.AsyncOrderService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import java.net.URI;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+// same operations as /api/v1/orders, but the servlet thread is released as soon as the work is queued;
+// the response is written when AsyncOrderService completes it. A write that outlives the timeout keeps running
+// and may still commit, so only a keyed write is answered with a retry; any other gets 202 and is left to a poll
+@RestController
+@RequestMapping(value = "/api/v2/orders")
+public class AsyncOrdersController {
+
+    private static final String IDEMPOTENCY_KEY = "Idempotency-Key";
+
+    private final AsyncOrderService asyncOrderService;
+    private final long timeoutMs;
+
+    public AsyncOrdersController(AsyncOrderService asyncOrderService, @Value("${orders.async.timeout-ms:10000}") long timeoutMs) {
+        this.asyncOrderService = asyncOrderService;
+        this.timeoutMs = timeoutMs;
+    }
+
+    @PostMapping("/")
+    public DeferredResult<Order> createOrder(
+            @RequestBody Order order,
+            @RequestHeader(value = IDEMPOTENCY_KEY, required = false) String idempotencyKey
+    ) {
+        return deferWrite(asyncOrderService.createOrder(order, idempotencyKey), idempotencyKey != null, null);
+    }
+
+    @PostMapping("/batch")
+    public DeferredResult<List<OrderResult>> createOrders(@RequestBody List<Order> orders) {
+        return deferWrite(asyncOrderService.createOrders(orders), false, null);
+    }
+
+    @PutMapping("/{id}/pay")
+    public DeferredResult<Order> payOrder(
+            @PathVariable Long id,
+            @RequestHeader(value = IDEMPOTENCY_KEY, required = false) String idempotencyKey
+    ) {
+        return deferWrite(asyncOrderService.payOrder(id, idempotencyKey), idempotencyKey != null, location(id));
+    }
+
+    @PutMapping("/{id}/cancel")
+    public DeferredResult<Order> cancelOrder(@PathVariable Long id) {
+        return deferWrite(asyncOrderService.cancelOrder(id), false, location(id));
+    }
+
+    @GetMapping("/{id}")
+    public DeferredResult<Order> getOrder(@PathVariable Long id) {
+        return defer(asyncOrderService.getOrder(id));
+    }
+
+    @GetMapping("/")
+    public DeferredResult<OrderPage> getOrders(
+            @RequestParam(required = false) OrderStatus status,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime createdFrom,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime createdTo,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int limit
+    ) {
+        return defer(asyncOrderService.getOrders(status, createdFrom, createdTo, cursor, limit));
+    }
+
+    @ExceptionHandler(IdempotencyKeyReusedException.class)
+    public ResponseEntity<String> handleReusedKey(IdempotencyKeyReusedException e) {
+        return new ResponseEntity<>(e.getMessage(), HttpStatus.UNPROCESSABLE_ENTITY);
+    }
+
+    @ExceptionHandler(OrdersBusyException.class)
+    public ResponseEntity<String> handleBusy(OrdersBusyException e) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header(HttpHeaders.RETRY_AFTER, "1").body(e.getMessage());
+    }
+
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<String> handleBadRequest(IllegalArgumentException e) {
+        return new ResponseEntity<>(e.getMessage(), HttpStatus.BAD_REQUEST);
+    }
+
+    private <T> DeferredResult<T> defer(CompletableFuture<T> future) {
+        DeferredResult<T> result = new DeferredResult<>(timeoutMs);
+        result.onTimeout(() -> result.setErrorResult(new OrdersBusyException("Order request timed out")));
+        return complete(result, future);
+    }
+
+    // a rejected write never ran and is answered by the busy handler; a timed out one is only safe to resend
+    // with its Idempotency-Key, without one the client is pointed at the order to check what became of it
+    private <T> DeferredResult<T> deferWrite(CompletableFuture<T> future, boolean retrySafe, URI location) {
+        DeferredResult<T> result = new DeferredResult<>(timeoutMs);
+        result.onTimeout(() -> {
+            if (retrySafe) {
+                result.setErrorResult(new OrdersBusyException("Order request timed out, retry with the same Idempotency-Key"));
+            } else {
+                ResponseEntity.BodyBuilder accepted = ResponseEntity.accepted();
+                if (location != null) {
+                    accepted.location(location);
+                }
+                result.setErrorResult(accepted.body("Order request is still being processed"));
+            }
+        });
+        return complete(result, future);
+    }
+
+    private static <T> DeferredResult<T> complete(DeferredResult<T> result, CompletableFuture<T> future) {
+        future.whenComplete((value, error) -> {
+            if (error == null) {
+                result.setResult(value);
+            } else {
+                result.setErrorResult(error instanceof CompletionException && error.getCause() != null ? error.getCause() : error);
+            }
+        });
+        return result;
+    }
+
+    private static URI location(Long id) {
+        return URI.create("/api/v2/orders/" + id);
+    }
+}
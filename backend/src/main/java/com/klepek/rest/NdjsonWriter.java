@@ -0,0 +1,42 @@
+package com.klepek.rest;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.springframework.http.MediaType;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+
+// writes one JSON document per line straight to the response, so an export never holds more than the current row
+class NdjsonWriter {
+
+    static final String MEDIA_TYPE = "application/x-ndjson";
+    // a bare StreamingResponseBody is written without a Content-Type, whatever the mapping produces
+    static final MediaType CONTENT_TYPE = MediaType.parseMediaType(MEDIA_TYPE);
+
+    private final ObjectWriter objectWriter;
+    private final JsonGenerator generator;
+
+    NdjsonWriter(ObjectMapper objectMapper, OutputStream out) throws IOException {
+        this.objectWriter = objectMapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        this.generator = objectMapper.getFactory().createGenerator(out);
+        this.generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        this.generator.setRootValueSeparator(null);
+    }
+
+    void write(Object value) {
+        try {
+            objectWriter.writeValue(generator, value);
+            generator.writeRaw('\n');
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    void flush() throws IOException {
+        generator.flush();
+    }
+}
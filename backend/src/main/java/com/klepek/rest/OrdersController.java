@@ -1,31 +1,84 @@
 package com.klepek.rest;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.klepek.exceptions.IdempotencyKeyReusedException;
+import com.klepek.exceptions.OrdersBusyException;
+import com.klepek.idempotency.IdempotencyStore;
 import com.klepek.model.Order;
+import com.klepek.model.OrderPage;
+import com.klepek.model.OrderResult;
+import com.klepek.model.OrderStatus;
+import com.klepek.order.OrderCoalescer;
 import com.klepek.order.OrderService;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.stream.Collectors;
 
 @RestController
 @RequestMapping(value = "/api/v1/orders")
 public class OrdersController {
 
+    private static final String IDEMPOTENCY_KEY = "Idempotency-Key";
+
     private final OrderService orderService;
+    private final IdempotencyStore idempotencyStore;
+    private final ObjectMapper objectMapper;
+    private final OrderCoalescer orderCoalescer;
 
     @Autowired
-    public OrdersController(OrderService orderService) {
+    public OrdersController(
+            OrderService orderService,
+            IdempotencyStore idempotencyStore,
+            ObjectMapper objectMapper,
+            ObjectProvider<OrderCoalescer> orderCoalescer
+    ) {
         this.orderService = orderService;
+        this.idempotencyStore = idempotencyStore;
+        this.objectMapper = objectMapper;
+        this.orderCoalescer = orderCoalescer.getIfAvailable();
     }
 
     @PostMapping("/")
-    public Order createOrder(@RequestBody Order order) {
-        return orderService.createOrder(order);
+    public Order createOrder(
+            @RequestBody Order order,
+            @RequestHeader(value = IDEMPOTENCY_KEY, required = false) String idempotencyKey
+    ) {
+        if (idempotencyKey == null) {
+            return orderCoalescer != null ? orderCoalescer.createOrder(order) : orderService.createOrder(order);
+        }
+        String request = order.products().stream()
+                .map(product -> product.id() + "x" + product.quantity())
+                .collect(Collectors.joining(","));
+        // never coalesced: the key has to commit in the same transaction as the order it stands for
+        return idempotencyStore.execute("createOrder", idempotencyKey, request,
+                () -> orderService.createOrder(order), orderService::getOrder);
+    }
+
+    @PostMapping("/batch")
+    public List<OrderResult> createOrders(@RequestBody List<Order> orders) {
+        return orderService.createOrders(orders);
     }
 
     @PutMapping("/{id}/pay")
-    public Order payOrder(@PathVariable Long id) {
-        return orderService.payOrder(id);
+    public Order payOrder(
+            @PathVariable Long id,
+            @RequestHeader(value = IDEMPOTENCY_KEY, required = false) String idempotencyKey
+    ) {
+        if (idempotencyKey == null) {
+            return orderService.payOrder(id);
+        }
+        return idempotencyStore.execute("payOrder", idempotencyKey, String.valueOf(id),
+                () -> orderService.payOrder(id), orderService::getOrder);
     }
 
     @PutMapping("/{id}/cancel")
@@ -33,13 +86,49 @@ public class OrdersController {
         return orderService.cancelOrder(id);
     }
 
+    // the version is taken before the order is read, so a change landing in between costs one extra download, never a stale 304
     @GetMapping("/{id}")
-    public Order getOrder(@PathVariable Long id) {
-        return orderService.getOrder(id);
+    public ResponseEntity<Order> getOrder(@PathVariable Long id, WebRequest request) {
+        String etag = "\"" + orderService.getOrderVersion(id) + "\"";
+        if (request.checkNotModified(etag)) {
+            return null;
+        }
+        return ResponseEntity.ok().eTag(etag).body(orderService.getOrder(id));
     }
 
     @GetMapping("/")
-    public List<Order> getAllOrders() {
-        return orderService.getAllOrders();
+    public OrderPage getOrders(
+            @RequestParam(required = false) OrderStatus status,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime createdFrom,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime createdTo,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int limit
+    ) {
+        return orderService.getOrders(status, createdFrom, createdTo, cursor, limit);
+    }
+
+    @GetMapping(value = "/export", produces = NdjsonWriter.MEDIA_TYPE)
+    public ResponseEntity<StreamingResponseBody> exportOrders() {
+        StreamingResponseBody body = out -> {
+            NdjsonWriter writer = new NdjsonWriter(objectMapper, out);
+            orderService.exportOrders(writer::write);
+            writer.flush();
+        };
+        return ResponseEntity.ok().contentType(NdjsonWriter.CONTENT_TYPE).body(body);
+    }
+
+    @ExceptionHandler(IdempotencyKeyReusedException.class)
+    public ResponseEntity<String> handleReusedKey(IdempotencyKeyReusedException e) {
+        return new ResponseEntity<>(e.getMessage(), HttpStatus.UNPROCESSABLE_ENTITY);
+    }
+
+    @ExceptionHandler(OrdersBusyException.class)
+    public ResponseEntity<String> handleBusy(OrdersBusyException e) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header(HttpHeaders.RETRY_AFTER, "1").body(e.getMessage());
+    }
+
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<String> handleBadRequest(IllegalArgumentException e) {
+        return new ResponseEntity<>(e.getMessage(), HttpStatus.BAD_REQUEST);
     }
 }
@@ -1,10 +1,15 @@
 package com.klepek.rest;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.klepek.model.Product;
+import com.klepek.model.StockLevel;
+import com.klepek.product.CatalogSnapshot;
 import com.klepek.product.ProductService;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.List;
 
@@ -13,9 +18,11 @@ import java.util.List;
 public class ProductController {
 
     private final ProductService productService;
+    private final ObjectMapper objectMapper;
 
-    public ProductController(ProductService productService) {
+    public ProductController(ProductService productService, ObjectMapper objectMapper) {
         this.productService = productService;
+        this.objectMapper = objectMapper;
     }
 
     @PostMapping("/")
@@ -38,8 +45,49 @@ public class ProductController {
         }
     }
 
+    @GetMapping("/{id}/stock")
+    public ResponseEntity<StockLevel> getStockLevel(@PathVariable Long id) {
+        return productService.getStockLevel(id)
+                .map(stockLevel -> new ResponseEntity<>(stockLevel, HttpStatus.OK))
+                .orElseGet(() -> new ResponseEntity<>(HttpStatus.NOT_FOUND));
+    }
+
+    // If-None-Match is checked against the version before anything is loaded, but the ETag sent with a body is the
+    // version of that body, which checkNotModified would not guarantee
     @GetMapping("/")
-    public ResponseEntity<List<Product>> getAll() {
-        return new ResponseEntity<>(productService.getAllProducts(), HttpStatus.OK);
+    public ResponseEntity<List<Product>> getAll(@RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        String current = etag(productService.getCatalogVersion());
+        if (matches(ifNoneMatch, current)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(current).build();
+        }
+        CatalogSnapshot catalog = productService.getCatalog();
+        return ResponseEntity.ok().eTag(etag(catalog.version())).body(catalog.products());
+    }
+
+    @GetMapping(value = "/export", produces = NdjsonWriter.MEDIA_TYPE)
+    public ResponseEntity<StreamingResponseBody> export() {
+        StreamingResponseBody body = out -> {
+            NdjsonWriter writer = new NdjsonWriter(objectMapper, out);
+            productService.exportProducts(writer::write);
+            writer.flush();
+        };
+        return ResponseEntity.ok().contentType(NdjsonWriter.CONTENT_TYPE).body(body);
+    }
+
+    private static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.equals("*") || tag.equals(etag) || tag.equals("W/" + etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String etag(String version) {
+        return "\"" + version + "\"";
     }
 }
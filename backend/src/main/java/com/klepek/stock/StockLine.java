@@ -0,0 +1,9 @@
+package com.klepek.stock;
+
+import com.klepek.model.StoredProduct;
+
+public record StockLine(
+        StoredProduct product,
+        int quantity
+) {
+}
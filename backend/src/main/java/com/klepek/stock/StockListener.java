@@ -0,0 +1,8 @@
+package com.klepek.stock;
+
+// notified with the new in-memory available quantity after every reservation, release or rollback
+@FunctionalInterface
+public interface StockListener {
+
+    void stockChanged(Long productId, int available);
+}
@@ -0,0 +1,441 @@
+package com.klepek.stock;
+
+import com.klepek.exceptions.InsufficientStockException;
+import com.klepek.model.StockDelta;
+import com.klepek.model.StoredProduct;
+import com.klepek.profiling.QueryProfile;
+import com.klepek.repository.ProductRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.ToIntFunction;
+
+// in-memory stock counters per product; the reservation counts reach the table through the flush in either write mode
+@Component
+public class StockReservationEngine {
+
+    private static final Logger log = LoggerFactory.getLogger(StockReservationEngine.class);
+
+    private static final int STRIPES = 64;
+
+    private final ProductRepository productRepository;
+    private final StockWriteMode writeMode;
+    private final ReentrantLock[] stripes = new ReentrantLock[STRIPES];
+    // held from taking the pending deltas until they are written, so an eviction never overlaps a write of its product
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private final Map<Long, StockCounter> counters = new ConcurrentHashMap<>();
+    private final List<StockListener> listeners = new CopyOnWriteArrayList<>();
+
+    public StockReservationEngine(
+            ProductRepository productRepository,
+            @Value("${stock.write-mode:WRITE_BEHIND}") StockWriteMode writeMode
+    ) {
+        this.productRepository = productRepository;
+        this.writeMode = writeMode;
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+    }
+
+    // the reservation counts are only ever flushed, so after a crash they are rebuilt from the orders themselves
+    @PostConstruct
+    public void reconcile() {
+        int products = productRepository.reconcileReservationCounters();
+        log.info("Reconciled reservation counters of {} products with the stored orders", products);
+    }
+
+    public void reserve(StoredProduct product, int quantity) {
+        reserve(List.of(new StockLine(product, quantity)));
+    }
+
+    public void reserve(Collection<StockLine> lines) {
+        Map<Long, Integer> changed = new HashMap<>();
+        lines.forEach(line -> reloadIfStale(line.product().getId()));
+        List<ReentrantLock> locks = lockStripes(lines);
+        try {
+            Map<Long, Integer> required = new HashMap<>();
+            for (StockLine line : lines) {
+                int quantity = required.merge(line.product().getId(), line.quantity(), Integer::sum);
+                if (counterFor(line.product()).available < quantity) {
+                    throw new InsufficientStockException("Insufficient stock for product: " + line.product().getName());
+                }
+            }
+            for (StockLine line : lines) {
+                StockCounter counter = counterFor(line.product());
+                applyDelta(counter, -line.quantity());
+                applyReservationDelta(counter, line.quantity(), 1);
+                changed.put(line.product().getId(), counter.available);
+            }
+        } finally {
+            unlock(locks);
+        }
+        changed.forEach(this::notifyListeners);
+
+        if (writeMode == StockWriteMode.WRITE_THROUGH) {
+            writeThrough(lines);
+        }
+        onRollback(() -> lines.forEach(line -> adjustIfPresent(line.product().getId(), line.quantity(), -line.quantity(), -1)));
+    }
+
+    public void release(StoredProduct product, int quantity) {
+        release(product, quantity, false);
+    }
+
+    public void release(StoredProduct product, int quantity, boolean paid) {
+        int reservedDelta = paid ? 0 : -quantity;
+        int available;
+        reloadIfStale(product.getId());
+        ReentrantLock lock = stripeFor(product.getId());
+        lock(lock);
+        try {
+            StockCounter counter = counterFor(product);
+            applyDelta(counter, quantity);
+            applyReservationDelta(counter, reservedDelta, -1);
+            available = counter.available;
+        } finally {
+            lock.unlock();
+        }
+        notifyListeners(product.getId(), available);
+        onRollback(() -> adjustIfPresent(product.getId(), -quantity, -reservedDelta, 1));
+
+        if (writeMode == StockWriteMode.WRITE_THROUGH) {
+            productRepository.incrementStock(product.getId(), quantity);
+        }
+    }
+
+    public void settle(StoredProduct product, int quantity) {
+        ReentrantLock lock = stripeFor(product.getId());
+        lock(lock);
+        try {
+            applyReservationDelta(counterFor(product), -quantity, 0);
+        } finally {
+            lock.unlock();
+        }
+        onRollback(() -> adjustIfPresent(product.getId(), 0, quantity, 0));
+    }
+
+    public void addListener(StockListener listener) {
+        listeners.add(listener);
+    }
+
+    public Integer getAvailable(Long productId) {
+        StockCounter counter = counters.get(productId);
+        if (counter == null) {
+            return null;
+        }
+        ReentrantLock lock = stripeFor(productId);
+        lock(lock);
+        try {
+            return counter.stale ? null : counter.available;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // null when the product has not been touched since startup, the stored columns are current then
+    public Integer getReserved(Long productId) {
+        return read(productId, counter -> counter.reserved);
+    }
+
+    public Integer getActiveOrderLines(Long productId) {
+        return read(productId, counter -> counter.activeOrderLines);
+    }
+
+    // waits for a running flush, whose delta may be taken but not yet written, so the reload finds it in the table
+    public void evict(Long productId) {
+        flushLock.lock();
+        try {
+            markStale(productId);
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    public void remove(Long productId) {
+        ReentrantLock lock = stripeFor(productId);
+        lock(lock);
+        try {
+            counters.remove(productId);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void writeThrough(Collection<StockLine> lines) {
+        List<StockLine> written = new ArrayList<>();
+        for (StockLine line : lines) {
+            if (productRepository.decrementStock(line.product().getId(), line.quantity()) == 0) {
+                written.forEach(done -> productRepository.incrementStock(done.product().getId(), done.quantity()));
+                // the table no longer agrees with the counter, e.g. after a concurrent manual stock update; nothing of the
+                // stock is buffered in this mode, and the flush may be waiting for a row this transaction holds
+                markStale(line.product().getId());
+                lines.forEach(undo -> adjustIfPresent(undo.product().getId(), undo.quantity(), -undo.quantity(), -1));
+                throw new InsufficientStockException("Insufficient stock for product: " + line.product().getName());
+            }
+            written.add(line);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${stock.write-behind.flush-interval-ms:1000}")
+    public void flush() {
+        flushLock.lock();
+        try {
+            flushLocked();
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    private void flushLocked() {
+        Map<Long, StockDelta> deltas = new HashMap<>();
+        counters.forEach((productId, counter) -> {
+            ReentrantLock lock = stripeFor(productId);
+            lock(lock);
+            try {
+                if (counter.pendingDelta != 0 || counter.pendingReserved != 0 || counter.pendingActiveOrderLines != 0) {
+                    deltas.put(productId, new StockDelta(counter.pendingDelta, counter.pendingReserved, counter.pendingActiveOrderLines));
+                    counter.pendingDelta = 0;
+                    counter.pendingReserved = 0;
+                    counter.pendingActiveOrderLines = 0;
+                }
+            } finally {
+                lock.unlock();
+            }
+        });
+
+        if (deltas.isEmpty()) {
+            return;
+        }
+
+        try {
+            for (Long productId : productRepository.applyStockDeltas(deltas)) {
+                StockDelta rejected = deltas.get(productId);
+                log.warn("Stored stock of product {} is below the buffered delta of {}, reloading it", productId, rejected.stock());
+                // the reservation counts were rejected with the row, they go out again with the next flush
+                restorePendingDelta(productId, new StockDelta(0, rejected.reserved(), rejected.activeOrderLines()));
+                markStale(productId);
+            }
+        } catch (RuntimeException e) {
+            log.warn("Failed to write back {} stock deltas", deltas.size(), e);
+            deltas.forEach(this::restorePendingDelta);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+
+    private void markStale(Long productId) {
+        ReentrantLock lock = stripeFor(productId);
+        lock(lock);
+        try {
+            StockCounter counter = counters.get(productId);
+            if (counter != null) {
+                counter.stale = true;
+                counter.evictions++;
+                counter.pendingDelta = 0;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // a stale counter buffers no stock delta, so the stored quantity is complete; it is read outside the stripe lock
+    // and dropped if the product was evicted again meanwhile
+    private void reloadIfStale(Long productId) {
+        StockCounter counter = counters.get(productId);
+        if (counter == null) {
+            return;
+        }
+        long evictions;
+        ReentrantLock lock = stripeFor(productId);
+        lock(lock);
+        try {
+            if (!counter.stale) {
+                return;
+            }
+            evictions = counter.evictions;
+        } finally {
+            lock.unlock();
+        }
+
+        Integer stored = productRepository.findStockQuantity(productId);
+        if (stored == null) {
+            return;
+        }
+        lock(lock);
+        try {
+            if (counter.stale && counter.evictions == evictions) {
+                counter.available = stored;
+                counter.stale = false;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private StockCounter counterFor(StoredProduct product) {
+        StockCounter counter = counters.computeIfAbsent(product.getId(), id -> new StockCounter(product));
+        if (counter.stale) {
+            counter.available = product.getStockQuantity();
+            counter.stale = false;
+        }
+        return counter;
+    }
+
+    private Integer read(Long productId, ToIntFunction<StockCounter> value) {
+        StockCounter counter = counters.get(productId);
+        if (counter == null) {
+            return null;
+        }
+        ReentrantLock lock = stripeFor(productId);
+        lock(lock);
+        try {
+            return value.applyAsInt(counter);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private int stripeIndex(Long productId) {
+        return Long.hashCode(productId) & (STRIPES - 1);
+    }
+
+    private ReentrantLock stripeFor(Long productId) {
+        return stripes[stripeIndex(productId)];
+    }
+
+    // stripes are always taken in ascending index order, so overlapping baskets cannot deadlock
+    private List<ReentrantLock> lockStripes(Collection<StockLine> lines) {
+        TreeSet<Integer> indexes = new TreeSet<>();
+        for (StockLine line : lines) {
+            indexes.add(stripeIndex(line.product().getId()));
+        }
+        List<ReentrantLock> locks = indexes.stream().map(index -> stripes[index]).toList();
+        locks.forEach(this::lock);
+        return locks;
+    }
+
+    private void lock(ReentrantLock lock) {
+        if (lock.tryLock()) {
+            return;
+        }
+        long started = System.nanoTime();
+        lock.lock();
+        QueryProfile.current().lockWaited(System.nanoTime() - started);
+    }
+
+    private void unlock(List<ReentrantLock> locks) {
+        for (int i = locks.size() - 1; i >= 0; i--) {
+            locks.get(i).unlock();
+        }
+    }
+
+    private void applyDelta(StockCounter counter, int delta) {
+        if (counter.stale) {
+            return;
+        }
+        counter.available += delta;
+        if (writeMode == StockWriteMode.WRITE_BEHIND) {
+            counter.pendingDelta += delta;
+        }
+    }
+
+    private void applyReservationDelta(StockCounter counter, int reserved, int activeOrderLines) {
+        counter.reserved += reserved;
+        counter.pendingReserved += reserved;
+        counter.activeOrderLines += activeOrderLines;
+        counter.pendingActiveOrderLines += activeOrderLines;
+    }
+
+    private void adjustIfPresent(Long productId, int delta, int reserved, int activeOrderLines) {
+        Integer available = null;
+        ReentrantLock lock = stripeFor(productId);
+        lock(lock);
+        try {
+            StockCounter counter = counters.get(productId);
+            if (counter != null) {
+                applyDelta(counter, delta);
+                applyReservationDelta(counter, reserved, activeOrderLines);
+                if (delta != 0 && !counter.stale) {
+                    available = counter.available;
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (available != null) {
+            notifyListeners(productId, available);
+        }
+    }
+
+    private void notifyListeners(Long productId, int available) {
+        for (StockListener listener : listeners) {
+            listener.stockChanged(productId, available);
+        }
+    }
+
+    private void restorePendingDelta(Long productId, StockDelta delta) {
+        ReentrantLock lock = stripeFor(productId);
+        lock(lock);
+        try {
+            StockCounter counter = counters.get(productId);
+            if (counter != null) {
+                counter.pendingDelta += delta.stock();
+                counter.pendingReserved += delta.reserved();
+                counter.pendingActiveOrderLines += delta.activeOrderLines();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // counters live outside the transaction, so a rolled back order has to undo its own adjustments
+    private void onRollback(Runnable compensation) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_ROLLED_BACK) {
+                    compensation.run();
+                }
+            }
+        });
+    }
+
+    private static final class StockCounter {
+        private int available;
+        private int pendingDelta;
+        private int reserved;
+        private int pendingReserved;
+        private int activeOrderLines;
+        private int pendingActiveOrderLines;
+        private boolean stale;
+        private long evictions;
+
+        private StockCounter(StoredProduct product) {
+            this.available = product.getStockQuantity();
+            this.reserved = product.getReservedQuantity();
+            this.activeOrderLines = product.getActiveOrderLines();
+        }
+    }
+}
@@ -0,0 +1,8 @@
+package com.klepek.stock;
+
+public enum StockWriteMode {
+    // counters are written back to the products table periodically by StockReservationEngine.flush()
+    WRITE_BEHIND,
+    // every reservation and release is applied to the products table inside the caller's transaction
+    WRITE_THROUGH
+}
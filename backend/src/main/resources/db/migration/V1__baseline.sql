@@ -0,0 +1,51 @@
+-- schema previously generated by ddl-auto: update, plus the indexes the order and product queries rely on;
+-- kept to types H2 and PostgreSQL both accept
+
+create sequence products_seq start with 1 increment by 50;
+create sequence orders_seq start with 1 increment by 50;
+create sequence order_items_seq start with 1 increment by 50;
+
+create table products (
+    id bigint not null,
+    name varchar(255) not null,
+    stock_quantity integer not null,
+    price_per_unit numeric(38, 2) not null,
+    constraint pk_products primary key (id)
+);
+
+create table orders (
+    id bigint not null,
+    total_amount numeric(38, 2) not null,
+    status varchar(32) not null,
+    created_at timestamp(6) not null,
+    updated_at timestamp(6),
+    expires_at timestamp(6) not null,
+    constraint pk_orders primary key (id)
+);
+
+create table order_items (
+    id bigint not null,
+    order_id bigint,
+    product_id bigint,
+    quantity integer not null,
+    total_price numeric(38, 2),
+    constraint pk_order_items primary key (id),
+    constraint fk_order_items_order foreign key (order_id) references orders (id),
+    constraint fk_order_items_product foreign key (product_id) references products (id)
+);
+
+create table idempotency_keys (
+    idempotency_key varchar(160) not null,
+    fingerprint varchar(64) not null,
+    order_id bigint not null,
+    created_at timestamp(6) not null,
+    constraint pk_idempotency_keys primary key (idempotency_key)
+);
+
+-- expiry sweep and keyset pages by status
+create index idx_orders_status_expires_at on orders (status, expires_at);
+-- loading the items of an order
+create index idx_order_items_order_id on order_items (order_id);
+-- active order check before a product is deleted
+create index idx_order_items_product_id on order_items (product_id);
+create index idx_idempotency_keys_created_at on idempotency_keys (created_at);
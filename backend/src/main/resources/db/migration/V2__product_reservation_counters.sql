@@ -0,0 +1,14 @@
+-- per-product counters kept by the stock engine, so deleting a product and reading its reservations need no join
+
+alter table products add column reserved_quantity integer default 0 not null;
+alter table products add column active_order_lines integer default 0 not null;
+
+update products set
+    reserved_quantity = coalesce((
+        select sum(i.quantity) from order_items i join orders o on o.id = i.order_id
+        where i.product_id = products.id and o.status = 'CREATED'
+    ), 0),
+    active_order_lines = (
+        select count(*) from order_items i join orders o on o.id = i.order_id
+        where i.product_id = products.id and o.status <> 'CANCELLED'
+    );
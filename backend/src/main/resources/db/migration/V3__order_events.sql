@@ -0,0 +1,12 @@
+-- transactional outbox of order status changes, drained by the relay in id order
+
+create sequence order_events_seq start with 1 increment by 50;
+
+create table order_events (
+    id bigint not null,
+    order_id bigint not null,
+    event_type varchar(32) not null,
+    status varchar(32) not null,
+    occurred_at timestamp(6) not null,
+    constraint pk_order_events primary key (id)
+);
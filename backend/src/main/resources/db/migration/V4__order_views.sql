@@ -0,0 +1,11 @@
+-- denormalized read model, one row per order; rows for existing orders are built by OrderViews at startup
+
+create table order_views (
+    id bigint not null,
+    status varchar(32) not null,
+    created_at timestamp(6) not null,
+    items varchar(1000000) not null,
+    constraint pk_order_views primary key (id)
+);
+
+create index idx_order_views_status_id on order_views (status, id);
@@ -0,0 +1,11 @@
+-- product name and unit price as they were when the line was bought, so order history never reads products
+
+alter table order_items add column product_name varchar(255);
+alter table order_items add column unit_price numeric(38, 2);
+
+update order_items set
+    product_name = (select p.name from products p where p.id = order_items.product_id),
+    unit_price = coalesce(
+        round(total_price / quantity, 2),
+        (select p.price_per_unit from products p where p.id = order_items.product_id)
+    );
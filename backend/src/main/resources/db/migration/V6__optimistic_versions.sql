@@ -0,0 +1,4 @@
+-- version columns for the optimistic concurrency mode; checked on every entity update in either mode
+
+alter table products add column version bigint default 0 not null;
+alter table orders add column version bigint default 0 not null;
@@ -0,0 +1,158 @@
+package com.klepek.idempotency;
+
+import com.klepek.exceptions.IdempotencyKeyReusedException;
+import com.klepek.exceptions.InsufficientStockException;
+import com.klepek.model.Order;
+import com.klepek.model.OrderStatus;
+import com.klepek.model.Product;
+import com.klepek.model.StoredIdempotencyKey;
+import com.klepek.order.ConcurrencyMode;
+import com.klepek.order.OptimisticRetry;
+import com.klepek.repository.IdempotencyKeyRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class IdempotencyStoreTest {
+
+    private static final Order ORDER = new Order(1L, List.of(new Product(1L, 5)), OrderStatus.CREATED);
+
+    private IdempotencyKeyRepository idempotencyKeyRepository;
+
+    private IdempotencyStore store;
+
+    private AtomicInteger runs;
+
+    @BeforeEach
+    void setUp() {
+        idempotencyKeyRepository = mock(IdempotencyKeyRepository.class);
+        when(idempotencyKeyRepository.findById(any())).thenReturn(Optional.empty());
+        ObjectProvider<MeterRegistry> meterRegistry = mock(ObjectProvider.class);
+        when(meterRegistry.getObject()).thenReturn(new SimpleMeterRegistry());
+        OptimisticRetry optimisticRetry = new OptimisticRetry(ConcurrencyMode.OPTIMISTIC, 3, 1, 2, meterRegistry);
+        store = new IdempotencyStore(idempotencyKeyRepository, mock(PlatformTransactionManager.class), optimisticRetry,
+                100, 60_000, 24);
+        runs = new AtomicInteger();
+    }
+
+    @Test
+    void execute_WhenKeyIsRetried_ShouldReturnFirstResponseWithoutRunningAgain() {
+        Order first = store.execute("createOrder", "key-1", "1x5", this::createOrder, id -> null);
+        Order retry = store.execute("createOrder", "key-1", "1x5", this::createOrder, id -> null);
+
+        assertThat(retry).isSameAs(first);
+        assertThat(runs.get()).isEqualTo(1);
+        verify(idempotencyKeyRepository, times(1)).saveAndFlush(any(StoredIdempotencyKey.class));
+    }
+
+    @Test
+    void execute_WhenKeyIsReusedForDifferentRequest_ShouldThrowException() {
+        store.execute("createOrder", "key-1", "1x5", this::createOrder, id -> null);
+
+        assertThatThrownBy(() -> store.execute("createOrder", "key-1", "1x6", this::createOrder, id -> null))
+                .isInstanceOf(IdempotencyKeyReusedException.class);
+        assertThat(runs.get()).isEqualTo(1);
+    }
+
+    @Test
+    void execute_WhenKeyIsOnlyStored_ShouldReplayStoredOrder() {
+        StoredIdempotencyKey stored = new StoredIdempotencyKey("createOrder:key-1", IdempotencyStore.fingerprint("1x5"), 1L);
+        when(idempotencyKeyRepository.findById("createOrder:key-1")).thenReturn(Optional.of(stored));
+
+        Order result = store.execute("createOrder", "key-1", "1x5", this::createOrder, id -> ORDER);
+
+        assertThat(result).isSameAs(ORDER);
+        assertThat(runs.get()).isZero();
+    }
+
+    @Test
+    void execute_WhenActionFails_ShouldNotRememberKey() {
+        assertThatThrownBy(() -> store.execute("createOrder", "key-1", "1x5", () -> {
+            throw new InsufficientStockException("Insufficient stock for product: Test Product");
+        }, id -> null)).isInstanceOf(InsufficientStockException.class);
+
+        Order result = store.execute("createOrder", "key-1", "1x5", this::createOrder, id -> null);
+
+        assertThat(result).isSameAs(ORDER);
+        assertThat(runs.get()).isEqualTo(1);
+    }
+
+    @Test
+    void execute_WhenKeyRowHitsVersionConflict_ShouldRetryWholeUnit() {
+        when(idempotencyKeyRepository.saveAndFlush(any(StoredIdempotencyKey.class)))
+                .thenThrow(new OptimisticLockingFailureException("order changed concurrently"))
+                .thenAnswer(invocation -> invocation.getArgument(0));
+
+        Order result = store.execute("createOrder", "key-1", "1x5", this::createOrder, id -> null);
+
+        assertThat(result).isSameAs(ORDER);
+        assertThat(runs.get()).isEqualTo(2);
+        verify(idempotencyKeyRepository, times(2)).saveAndFlush(any(StoredIdempotencyKey.class));
+    }
+
+    @Test
+    void execute_WhenDuplicatesArriveConcurrently_ShouldRunOnceAndShareResponse() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+
+        Future<Order> first = executor.submit(() -> store.execute("createOrder", "key-1", "1x5", () -> {
+            started.countDown();
+            await(release);
+            return createOrder();
+        }, id -> null));
+        started.await(5, TimeUnit.SECONDS);
+        List<Future<Order>> duplicates = List.of(
+                executor.submit(() -> store.execute("createOrder", "key-1", "1x5", this::createOrder, id -> null)),
+                executor.submit(() -> store.execute("createOrder", "key-1", "1x5", this::createOrder, id -> null))
+        );
+        release.countDown();
+
+        assertThat(first.get(5, TimeUnit.SECONDS)).isSameAs(ORDER);
+        for (Future<Order> duplicate : duplicates) {
+            assertThat(duplicate.get(5, TimeUnit.SECONDS)).isSameAs(ORDER);
+        }
+        executor.shutdown();
+        assertThat(runs.get()).isEqualTo(1);
+    }
+
+    @Test
+    void execute_WhenKeyIsTooLong_ShouldThrowException() {
+        assertThatThrownBy(() -> store.execute("createOrder", "k".repeat(129), "1x5", this::createOrder, id -> null))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private Order createOrder() {
+        runs.incrementAndGet();
+        return ORDER;
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.klepek.metrics;
+
+import com.klepek.exceptions.InsufficientStockException;
+import com.klepek.exceptions.OrderExpiredException;
+import com.klepek.model.Order;
+import com.klepek.model.OrderStatus;
+import com.klepek.model.Product;
+import com.klepek.order.OrderService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ServiceMetricsTest {
+
+    private static final Order ORDER = new Order(1L, List.of(new Product(1L, 5)), OrderStatus.CREATED);
+
+    private OrderService target;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private OrderService orderService;
+
+    @BeforeEach
+    void setUp() {
+        target = mock(OrderService.class);
+        meterRegistry = new SimpleMeterRegistry();
+        orderService = ServiceMetrics.instrument(target, OrderService.class, "orders", meterRegistry);
+    }
+
+    @Test
+    void instrument_ShouldTimeEveryCallPerMethod() {
+        when(target.createOrder(any())).thenReturn(ORDER);
+
+        assertThat(orderService.createOrder(ORDER)).isSameAs(ORDER);
+        orderService.createOrder(ORDER);
+        orderService.getOrder(1L);
+
+        assertThat(meterRegistry.get("service.duration").tags("service", "orders", "method", "createOrder").timer().count()).isEqualTo(2);
+        assertThat(meterRegistry.get("service.duration").tags("service", "orders", "method", "getOrder").timer().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("service.duration").tags("service", "orders", "method", "payOrder").timer().count()).isZero();
+    }
+
+    @Test
+    void instrument_ShouldCountRejectionsAndStillTimeTheCall() {
+        when(target.createOrder(any())).thenThrow(new InsufficientStockException("Insufficient stock for product: Test"));
+        when(target.payOrder(1L)).thenThrow(new OrderExpiredException("Order has expired: 1"));
+
+        assertThatThrownBy(() -> orderService.createOrder(ORDER)).isInstanceOf(InsufficientStockException.class);
+        assertThatThrownBy(() -> orderService.payOrder(1L)).isInstanceOf(OrderExpiredException.class);
+
+        assertThat(meterRegistry.get("service.rejections")
+                .tags("method", "createOrder", "exception", "InsufficientStockException").counter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("service.rejections")
+                .tags("method", "payOrder", "exception", "OrderExpiredException").counter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("service.duration").tags("method", "payOrder").timer().count()).isEqualTo(1);
+    }
+}
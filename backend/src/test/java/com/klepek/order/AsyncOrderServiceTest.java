@@ -0,0 +1,99 @@
+package com.klepek.order;
+
+import com.klepek.exceptions.OrdersBusyException;
+import com.klepek.idempotency.IdempotencyStore;
+import com.klepek.model.Order;
+import com.klepek.model.OrderStatus;
+import com.klepek.model.Product;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class AsyncOrderServiceTest {
+
+    private static final Order ORDER = new Order(1L, List.of(new Product(1L, 5)), OrderStatus.CREATED);
+
+    private OrderService orderService;
+
+    private IdempotencyStore idempotencyStore;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private AsyncOrderService asyncOrderService;
+
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        orderService = mock(OrderService.class);
+        idempotencyStore = mock(IdempotencyStore.class);
+        meterRegistry = new SimpleMeterRegistry();
+        // one writer and one queued write at most
+        asyncOrderService = new AsyncOrderService(orderService, idempotencyStore, mock(ObjectProvider.class), meterRegistry, 1, 1, 1);
+    }
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        asyncOrderService.shutdown();
+    }
+
+    @Test
+    void createOrder_WhenWritesAreSaturated_ShouldRejectAtOnceAndKeepServingReads() throws Exception {
+        when(orderService.createOrder(any())).thenAnswer(invocation -> {
+            release.await();
+            return ORDER;
+        });
+        when(orderService.getOrder(1L)).thenReturn(ORDER);
+
+        CompletableFuture<Order> running = asyncOrderService.createOrder(ORDER, null);
+        CompletableFuture<Order> queued = asyncOrderService.createOrder(ORDER, null);
+        CompletableFuture<Order> rejected = asyncOrderService.createOrder(ORDER, null);
+
+        assertThatThrownBy(rejected::join)
+                .isInstanceOf(CompletionException.class)
+                .hasCauseInstanceOf(OrdersBusyException.class);
+        assertThat(asyncOrderService.getOrder(1L).get(1, TimeUnit.SECONDS)).isSameAs(ORDER);
+        assertThat(meterRegistry.get("orders.async.rejected").tag("pool", "write").counter().count()).isEqualTo(1);
+
+        release.countDown();
+        assertThat(running.get(1, TimeUnit.SECONDS)).isSameAs(ORDER);
+        assertThat(queued.get(1, TimeUnit.SECONDS)).isSameAs(ORDER);
+    }
+
+    @Test
+    void payOrder_ShouldCompleteWithTheExceptionOfTheService() {
+        when(orderService.payOrder(1L)).thenThrow(new IllegalStateException("Order 1 cannot be paid"));
+
+        assertThatThrownBy(() -> asyncOrderService.payOrder(1L, null).join())
+                .isInstanceOf(CompletionException.class)
+                .hasCauseInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    void payOrder_WithIdempotencyKey_ShouldRunThroughTheIdempotencyStore() {
+        Order paid = new Order(1L, ORDER.products(), OrderStatus.PAID);
+        when(idempotencyStore.execute(eq("payOrder"), eq("key-1"), eq("1"), any(), any())).thenReturn(paid);
+
+        assertThat(asyncOrderService.payOrder(1L, "key-1").join()).isEqualTo(paid);
+        verify(orderService, never()).payOrder(any());
+    }
+}
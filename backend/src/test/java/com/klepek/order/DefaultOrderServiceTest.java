@@ -1,20 +1,31 @@
 package com.klepek.order;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.klepek.exceptions.InsufficientStockException;
+import com.klepek.exceptions.OrderCancelledException;
 import com.klepek.exceptions.OrderNotFoundException;
 import com.klepek.exceptions.OrderExpiredException;
 import com.klepek.exceptions.ProductNotFoundException;
 import com.klepek.model.*;
-import com.klepek.repository.OrderItemsRepository;
+import com.klepek.outbox.OrderOutbox;
+import com.klepek.repository.OrderEventsRepository;
+import com.klepek.repository.OrderViewsRepository;
 import com.klepek.repository.OrdersRepository;
 import com.klepek.repository.ProductRepository;
+import com.klepek.stock.StockReservationEngine;
+import com.klepek.stock.StockWriteMode;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
 import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
@@ -23,8 +34,9 @@ import java.util.List;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
 
-@DataJpaTest
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
 @AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
 @ActiveProfiles("test")
 class DefaultOrderServiceTest {
@@ -39,13 +51,26 @@ class DefaultOrderServiceTest {
     private ProductRepository productRepository;
 
     @Autowired
-    private OrderItemsRepository orderItemsRepository;
+    private OrderEventsRepository orderEventsRepository;
+
+    @Autowired
+    private OrderViewsRepository orderViewsRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private StockReservationEngine stockReservationEngine;
+
+    private OrderViews orderViews;
 
     private DefaultOrderService orderService;
 
     @BeforeEach
     void setUp() {
-        orderService = new DefaultOrderService(ordersRepository, productRepository, orderItemsRepository);
+        stockReservationEngine = new StockReservationEngine(productRepository, StockWriteMode.WRITE_BEHIND);
+        orderViews = new OrderViews(orderViewsRepository, ordersRepository, new ObjectMapper(), transactionManager);
+        orderService = new DefaultOrderService(ordersRepository, productRepository, stockReservationEngine, new OrderExpiryWheel(1000), new OrderVersions(), new OrderOutbox(orderEventsRepository), orderViews,
+                new OrderMetrics(ordersRepository, productRepository, stockReservationEngine, new SimpleMeterRegistry()), ConcurrencyMode.PESSIMISTIC);
     }
 
     @Test
@@ -59,6 +84,11 @@ class DefaultOrderServiceTest {
         Order order = new Order(null, products, OrderStatus.CREATED);
 
         Order result = orderService.createOrder(order);
+        assertThat(stockReservationEngine.getAvailable(product.getId())).isEqualTo(5);
+        assertThat(stockReservationEngine.getReserved(product.getId())).isEqualTo(5);
+        // the database only sees the reservation once the write-behind counters are flushed
+        stockReservationEngine.flush();
+        entityManager.clear();
 
         assertThat(result).isNotNull();
         assertThat(result.orderNumber()).isNotNull();
@@ -75,6 +105,8 @@ class DefaultOrderServiceTest {
 
         StoredProduct updatedProduct = entityManager.find(StoredProduct.class, product.getId());
         assertThat(updatedProduct.getStockQuantity()).isEqualTo(5);
+        assertThat(updatedProduct.getReservedQuantity()).isEqualTo(5);
+        assertThat(updatedProduct.getActiveOrderLines()).isEqualTo(1);
     }
 
     @Test
@@ -92,6 +124,53 @@ class DefaultOrderServiceTest {
                 .hasMessageContaining("Insufficient stock for product: Test Product");
     }
 
+    @Test
+    void createOrder_WhenStockIsReservedInMemory_ShouldRejectOrderExceedingRemainder() {
+        StoredProduct product = new StoredProduct("Test Product", 10, new BigDecimal("99.99"));
+        entityManager.persist(product);
+        entityManager.flush();
+
+        orderService.createOrder(new Order(null, List.of(new Product(product.getId(), 7)), OrderStatus.CREATED));
+
+        assertThat(stockReservationEngine.getAvailable(product.getId())).isEqualTo(3);
+        assertThatThrownBy(() -> orderService.createOrder(
+                new Order(null, List.of(new Product(product.getId(), 4)), OrderStatus.CREATED)))
+                .isInstanceOf(InsufficientStockException.class);
+        assertThat(stockReservationEngine.getAvailable(product.getId())).isEqualTo(3);
+    }
+
+    @Test
+    void createOrder_WhenSameProductIsListedTwice_ShouldMergeLines() {
+        StoredProduct product = new StoredProduct("Test Product", 10, new BigDecimal("99.99"));
+        entityManager.persist(product);
+        entityManager.flush();
+
+        Order order = new Order(null, List.of(new Product(product.getId(), 2), new Product(product.getId(), 3)), OrderStatus.CREATED);
+
+        Order result = orderService.createOrder(order);
+
+        assertThat(result.products()).hasSize(1);
+        assertThat(result.products().getFirst().quantity()).isEqualTo(5);
+        assertThat(stockReservationEngine.getAvailable(product.getId())).isEqualTo(5);
+    }
+
+    @Test
+    void createOrder_WhenOneLineIsInsufficient_ShouldReserveNothing() {
+        StoredProduct plenty = new StoredProduct("Plenty", 10, new BigDecimal("1.00"));
+        StoredProduct scarce = new StoredProduct("Scarce", 1, new BigDecimal("1.00"));
+        entityManager.persist(plenty);
+        entityManager.persist(scarce);
+        entityManager.flush();
+
+        Order order = new Order(null, List.of(new Product(plenty.getId(), 4), new Product(scarce.getId(), 2)), OrderStatus.CREATED);
+
+        assertThatThrownBy(() -> orderService.createOrder(order))
+                .isInstanceOf(InsufficientStockException.class)
+                .hasMessageContaining("Insufficient stock for product: Scarce");
+        assertThat(stockReservationEngine.getAvailable(plenty.getId())).isEqualTo(10);
+        assertThat(stockReservationEngine.getAvailable(scarce.getId())).isEqualTo(1);
+    }
+
     @Test
     void createOrder_WhenProductNotFound_ShouldThrowException() {
         List<Product> products = new ArrayList<>();
@@ -103,6 +182,33 @@ class DefaultOrderServiceTest {
                 .hasMessageContaining("Product not found: 999");
     }
 
+    @Test
+    void createOrders_ShouldCreateAcceptedOrdersAndReportRejectedOnes() {
+        StoredProduct product = new StoredProduct("Test Product", 10, new BigDecimal("10.00"));
+        entityManager.persist(product);
+        entityManager.flush();
+
+        List<OrderResult> results = orderService.createOrders(List.of(
+                new Order(null, List.of(new Product(product.getId(), 4)), OrderStatus.CREATED),
+                new Order(null, List.of(new Product(product.getId(), 7)), OrderStatus.CREATED),
+                new Order(null, List.of(new Product(999L, 1)), OrderStatus.CREATED),
+                new Order(null, List.of(new Product(product.getId(), 6)), OrderStatus.CREATED)
+        ));
+        stockReservationEngine.flush();
+        entityManager.clear();
+
+        assertThat(results).extracting("index").containsExactly(0, 1, 2, 3);
+        assertThat(results.get(0).order().orderNumber()).isNotNull();
+        assertThat(results.get(1).error()).contains("Insufficient stock for product: Test Product");
+        assertThat(results.get(2).error()).contains("Product not found: 999");
+        assertThat(results.get(3).order().products()).extracting("quantity").containsExactly(6);
+
+        StoredOrder stored = entityManager.find(StoredOrder.class, results.get(3).order().orderNumber());
+        assertThat(stored.getOrderItems()).hasSize(1);
+        assertThat(stored.getTotalAmount()).isEqualByComparingTo(new BigDecimal("60.00"));
+        assertThat(entityManager.find(StoredProduct.class, product.getId()).getStockQuantity()).isZero();
+    }
+
     @Test
     void getOrder_WhenOrderExists_ShouldReturnOrder() {
         StoredOrder order = new StoredOrder();
@@ -116,6 +222,7 @@ class DefaultOrderServiceTest {
         order.setTotalAmount(new BigDecimal("499.95"));
         entityManager.persist(order);
         entityManager.flush();
+        orderViews.backfill();
 
         Order result = orderService.getOrder(order.getId());
 
@@ -157,6 +264,67 @@ class DefaultOrderServiceTest {
         assertThat(updatedOrder.getStatus()).isEqualTo(OrderStatus.PAID);
     }
 
+    @Test
+    void payOrder_InOptimisticMode_ShouldUpdateStatusAndBumpVersion() {
+        DefaultOrderService optimistic = new DefaultOrderService(ordersRepository, productRepository, stockReservationEngine,
+                new OrderExpiryWheel(1000), new OrderVersions(), new OrderOutbox(orderEventsRepository), orderViews,
+                new OrderMetrics(ordersRepository, productRepository, stockReservationEngine, new SimpleMeterRegistry()), ConcurrencyMode.OPTIMISTIC);
+        StoredProduct product = new StoredProduct("Test Product", 10, new BigDecimal("99.99"));
+        entityManager.persist(product);
+        entityManager.flush();
+        Order created = optimistic.createOrder(new Order(null, List.of(new Product(product.getId(), 2)), OrderStatus.CREATED));
+        entityManager.flush();
+        long version = entityManager.find(StoredOrder.class, created.orderNumber()).getVersion();
+
+        Order paid = optimistic.payOrder(created.orderNumber());
+        entityManager.flush();
+        entityManager.clear();
+
+        assertThat(paid.status()).isEqualTo(OrderStatus.PAID);
+        assertThat(entityManager.find(StoredOrder.class, created.orderNumber()).getVersion()).isEqualTo(version + 1);
+    }
+
+    @Test
+    void orderLifecycle_ShouldKeepReservationCountersOfTheProduct() {
+        StoredProduct product = new StoredProduct("Test Product", 10, new BigDecimal("99.99"));
+        entityManager.persist(product);
+        entityManager.flush();
+
+        Order paid = orderService.createOrder(new Order(null, List.of(new Product(product.getId(), 2)), OrderStatus.CREATED));
+        Order cancelled = orderService.createOrder(new Order(null, List.of(new Product(product.getId(), 3)), OrderStatus.CREATED));
+        orderService.payOrder(paid.orderNumber());
+        orderService.cancelOrder(cancelled.orderNumber());
+        stockReservationEngine.flush();
+        entityManager.clear();
+
+        StoredProduct updatedProduct = entityManager.find(StoredProduct.class, product.getId());
+        assertThat(updatedProduct.getStockQuantity()).isEqualTo(8);
+        assertThat(updatedProduct.getReservedQuantity()).isZero();
+        assertThat(updatedProduct.getActiveOrderLines()).isEqualTo(1);
+    }
+
+    @Test
+    void orderLifecycle_ShouldRecordEveryStatusChangeInTheOutbox() {
+        StoredProduct product = new StoredProduct("Test Product", 10, new BigDecimal("99.99"));
+        entityManager.persist(product);
+        entityManager.flush();
+
+        Order paid = orderService.createOrder(new Order(null, List.of(new Product(product.getId(), 2)), OrderStatus.CREATED));
+        Order cancelled = orderService.createOrder(new Order(null, List.of(new Product(product.getId(), 3)), OrderStatus.CREATED));
+        orderService.payOrder(paid.orderNumber());
+        orderService.cancelOrder(cancelled.orderNumber());
+        entityManager.flush();
+
+        assertThat(orderEventsRepository.findOldest(PageRequest.of(0, 10)))
+                .extracting(StoredOrderEvent::getOrderId, StoredOrderEvent::getType)
+                .containsExactly(
+                        tuple(paid.orderNumber(), OrderEventType.CREATED),
+                        tuple(cancelled.orderNumber(), OrderEventType.CREATED),
+                        tuple(paid.orderNumber(), OrderEventType.PAID),
+                        tuple(cancelled.orderNumber(), OrderEventType.CANCELLED)
+                );
+    }
+
     @Test
     void payOrder_WhenOrderExpired_ShouldThrowException() {
         StoredOrder order = new StoredOrder();
@@ -177,6 +345,21 @@ class DefaultOrderServiceTest {
                 .hasMessageContaining("Order has expired: " + order.getId());
     }
 
+    @Test
+    void payOrder_WhenOrderIsCancelled_ShouldThrowAndKeepReservationCounters() {
+        StoredProduct product = new StoredProduct("Test Product", 10, new BigDecimal("99.99"));
+        entityManager.persist(product);
+        entityManager.flush();
+        Order order = orderService.createOrder(new Order(null, List.of(new Product(product.getId(), 4)), OrderStatus.CREATED));
+        orderService.cancelOrder(order.orderNumber());
+
+        assertThatThrownBy(() -> orderService.payOrder(order.orderNumber()))
+                .isInstanceOf(OrderCancelledException.class)
+                .hasMessageContaining("Order is cancelled: " + order.orderNumber());
+        assertThat(stockReservationEngine.getAvailable(product.getId())).isEqualTo(10);
+        assertThat(stockReservationEngine.getReserved(product.getId())).isZero();
+    }
+
     @Test
     void payOrder_WhenOrderDoesNotExist_ShouldThrowException() {
         assertThatThrownBy(() -> orderService.payOrder(999L))
@@ -199,6 +382,9 @@ class DefaultOrderServiceTest {
         entityManager.flush();
 
         Order result = orderService.cancelOrder(order.getId());
+        assertThat(stockReservationEngine.getAvailable(product.getId())).isEqualTo(8);
+        stockReservationEngine.flush();
+        entityManager.clear();
 
         assertThat(result).isNotNull();
         assertThat(result.orderNumber()).isEqualTo(order.getId());
@@ -219,7 +405,7 @@ class DefaultOrderServiceTest {
     }
 
     @Test
-    void checkExpiredOrders_ShouldCancelExpiredOrders() {
+    void expireOrder_WhenOrderIsExpired_ShouldCancelItAndRestoreStock() {
         StoredOrder order = new StoredOrder();
         StoredProduct product = new StoredProduct("Test Product", 5, new BigDecimal("99.99"));
         entityManager.persist(product);
@@ -233,7 +419,13 @@ class DefaultOrderServiceTest {
         entityManager.persist(order);
         entityManager.flush();
 
-        orderService.checkExpiredOrders();
+        boolean expired = orderService.expireOrder(order.getId());
+        assertThat(stockReservationEngine.getAvailable(product.getId())).isEqualTo(8);
+        stockReservationEngine.flush();
+        entityManager.flush();
+        entityManager.clear();
+
+        assertThat(expired).isTrue();
 
         StoredOrder updatedOrder = entityManager.find(StoredOrder.class, order.getId());
         assertThat(updatedOrder.getStatus()).isEqualTo(OrderStatus.CANCELLED);
@@ -242,6 +434,29 @@ class DefaultOrderServiceTest {
         assertThat(updatedProduct.getStockQuantity()).isEqualTo(8);
     }
 
+    @Test
+    void expireOrder_WhenOrderWasPaid_ShouldLeaveItUntouched() {
+        StoredOrder order = new StoredOrder();
+        StoredProduct product = new StoredProduct("Test Product", 5, new BigDecimal("99.99"));
+        entityManager.persist(product);
+        StoredOrderItem orderItem = new StoredOrderItem(order, product, 3);
+        orderItem.setTotalPrice(new BigDecimal("299.97"));
+        List<StoredOrderItem> orderItems = new ArrayList<>();
+        orderItems.add(orderItem);
+        order.setOrderItems(orderItems);
+        order.setTotalAmount(new BigDecimal("299.97"));
+        order.setStatus(OrderStatus.PAID);
+        order.setExpiresAt(LocalDateTime.now().minusMinutes(1));
+        entityManager.persist(order);
+        entityManager.flush();
+
+        boolean expired = orderService.expireOrder(order.getId());
+
+        assertThat(expired).isFalse();
+        assertThat(entityManager.find(StoredOrder.class, order.getId()).getStatus()).isEqualTo(OrderStatus.PAID);
+        assertThat(stockReservationEngine.getAvailable(product.getId())).isNull();
+    }
+
     @Test
     void getAllOrders_ShouldReturnAllOrders() {
         StoredOrder order1 = new StoredOrder();
@@ -266,6 +481,7 @@ class DefaultOrderServiceTest {
         entityManager.persist(order1);
         entityManager.persist(order2);
         entityManager.flush();
+        orderViews.backfill();
 
         List<Order> results = orderService.getAllOrders();
 
@@ -276,4 +492,206 @@ class DefaultOrderServiceTest {
             assertThat(((List<Product>) products).getFirst().name()).isEqualTo("Test Product");
         });
     }
-} 
+
+    @Test
+    void getAllOrders_ShouldReadOrderViewsInOneStatement() {
+        StoredProduct first = new StoredProduct("First", 100, new BigDecimal("1.00"));
+        StoredProduct second = new StoredProduct("Second", 100, new BigDecimal("2.00"));
+        entityManager.persist(first);
+        entityManager.persist(second);
+        for (int i = 0; i < 3; i++) {
+            StoredOrder order = new StoredOrder();
+            StoredOrderItem firstItem = new StoredOrderItem(order, first, 1);
+            firstItem.setTotalPrice(new BigDecimal("1.00"));
+            StoredOrderItem secondItem = new StoredOrderItem(order, second, 1);
+            secondItem.setTotalPrice(new BigDecimal("2.00"));
+            order.setOrderItems(new ArrayList<>(List.of(firstItem, secondItem)));
+            order.setTotalAmount(new BigDecimal("3.00"));
+            entityManager.persist(order);
+        }
+        entityManager.flush();
+        orderViews.backfill();
+        entityManager.flush();
+        entityManager.clear();
+        Statistics statistics = statistics();
+
+        List<Order> results = orderService.getAllOrders();
+
+        assertThat(results).hasSize(3);
+        assertThat(results).allSatisfy(order -> assertThat(order.products()).hasSize(2));
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+    }
+
+    @Test
+    void getOrder_ShouldReadOrderViewInOneStatement() {
+        StoredProduct product = new StoredProduct("Test Product", 10, new BigDecimal("99.99"));
+        entityManager.persist(product);
+        StoredOrder order = new StoredOrder();
+        StoredOrderItem orderItem = new StoredOrderItem(order, product, 2);
+        orderItem.setTotalPrice(new BigDecimal("199.98"));
+        order.setOrderItems(new ArrayList<>(List.of(orderItem)));
+        order.setTotalAmount(new BigDecimal("199.98"));
+        entityManager.persist(order);
+        entityManager.flush();
+        orderViews.backfill();
+        entityManager.flush();
+        entityManager.clear();
+        Statistics statistics = statistics();
+
+        Order result = orderService.getOrder(order.getId());
+
+        assertThat(result.products()).extracting("name").containsExactly("Test Product");
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+    }
+
+    @Test
+    void getOrder_ShouldKeepPriceAndStatusOfTheOrderWhenProductChanges() {
+        StoredProduct product = new StoredProduct("Test Product", 10, new BigDecimal("99.99"));
+        entityManager.persist(product);
+        entityManager.flush();
+
+        Order created = orderService.createOrder(new Order(null, List.of(new Product(product.getId(), 2)), OrderStatus.CREATED));
+        orderService.payOrder(created.orderNumber());
+        product.setPricePerUnit(new BigDecimal("149.99"));
+        entityManager.flush();
+        entityManager.clear();
+
+        Order result = orderService.getOrder(created.orderNumber());
+
+        assertThat(result.status()).isEqualTo(OrderStatus.PAID);
+        assertThat(result.products()).singleElement().satisfies(line -> {
+            assertThat(line.quantity()).isEqualTo(2);
+            assertThat(line.pricePerUnit()).isEqualByComparingTo(new BigDecimal("99.99"));
+        });
+    }
+
+    @Test
+    void getOrders_ShouldWalkPagesByCursorAndApplyStatusFilter() {
+        StoredProduct product = new StoredProduct("Test Product", 100, new BigDecimal("1.00"));
+        entityManager.persist(product);
+        for (int i = 0; i < 5; i++) {
+            StoredOrder order = new StoredOrder();
+            StoredOrderItem orderItem = new StoredOrderItem(order, product, 1);
+            orderItem.setTotalPrice(new BigDecimal("1.00"));
+            order.setOrderItems(new ArrayList<>(List.of(orderItem)));
+            order.setTotalAmount(new BigDecimal("1.00"));
+            order.setStatus(i % 2 == 0 ? OrderStatus.CREATED : OrderStatus.PAID);
+            entityManager.persist(order);
+        }
+        entityManager.flush();
+        orderViews.backfill();
+        entityManager.flush();
+        entityManager.clear();
+
+        OrderPage first = orderService.getOrders(null, null, null, null, 2);
+        OrderPage second = orderService.getOrders(null, null, null, first.nextCursor(), 2);
+        OrderPage third = orderService.getOrders(null, null, null, second.nextCursor(), 2);
+        OrderPage paid = orderService.getOrders(OrderStatus.PAID, null, null, null, 10);
+
+        assertThat(first.orders()).hasSize(2);
+        assertThat(second.orders()).hasSize(2);
+        assertThat(third.orders()).hasSize(1);
+        assertThat(third.nextCursor()).isNull();
+        assertThat(second.orders().getFirst().orderNumber()).isGreaterThan(first.orders().getLast().orderNumber());
+        assertThat(paid.orders()).hasSize(2).extracting("status").containsOnly(OrderStatus.PAID);
+    }
+
+    @Test
+    void getOrders_ShouldCapPageSize() {
+        OrderPage page = orderService.getOrders(null, null, null, null, 10_000);
+
+        assertThat(page.orders()).hasSizeLessThanOrEqualTo(DefaultOrderService.MAX_PAGE_SIZE);
+    }
+
+    @Test
+    void getOrders_WhenCursorIsMalformed_ShouldThrowException() {
+        assertThatThrownBy(() -> orderService.getOrders(null, null, null, "not a cursor", 10))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("Invalid cursor");
+    }
+
+    @Test
+    void exportOrders_ShouldGroupStreamedLinesIntoOrders() {
+        StoredProduct first = new StoredProduct("First", 100, new BigDecimal("1.00"));
+        StoredProduct second = new StoredProduct("Second", 100, new BigDecimal("2.00"));
+        entityManager.persist(first);
+        entityManager.persist(second);
+        for (int i = 0; i < 3; i++) {
+            StoredOrder order = new StoredOrder();
+            StoredOrderItem firstItem = new StoredOrderItem(order, first, 1);
+            firstItem.setTotalPrice(new BigDecimal("1.00"));
+            StoredOrderItem secondItem = new StoredOrderItem(order, second, 2);
+            secondItem.setTotalPrice(new BigDecimal("4.00"));
+            order.setOrderItems(new ArrayList<>(List.of(firstItem, secondItem)));
+            order.setTotalAmount(new BigDecimal("5.00"));
+            entityManager.persist(order);
+        }
+        entityManager.flush();
+        entityManager.clear();
+        List<Order> exported = new ArrayList<>();
+
+        orderService.exportOrders(exported::add);
+
+        assertThat(exported).hasSize(3);
+        assertThat(exported).allSatisfy(order -> {
+            assertThat(order.status()).isEqualTo(OrderStatus.CREATED);
+            assertThat(order.products()).extracting("name").containsExactly("First", "Second");
+            assertThat(order.products()).extracting("quantity").containsExactly(1, 2);
+        });
+    }
+
+    @Test
+    void exportOrders_ShouldRenderLinesFromTheirPurchaseSnapshot() {
+        StoredProduct product = new StoredProduct("Old Name", 10, new BigDecimal("5.00"));
+        entityManager.persist(product);
+        entityManager.flush();
+        orderService.createOrder(new Order(null, List.of(new Product(product.getId(), 2)), OrderStatus.CREATED));
+        product.setName("New Name");
+        product.setPricePerUnit(new BigDecimal("7.00"));
+        entityManager.flush();
+        entityManager.clear();
+        List<Order> exported = new ArrayList<>();
+
+        orderService.exportOrders(exported::add);
+
+        assertThat(exported).singleElement().satisfies(order -> assertThat(order.products()).singleElement().satisfies(line -> {
+            assertThat(line.id()).isEqualTo(product.getId());
+            assertThat(line.name()).isEqualTo("Old Name");
+            assertThat(line.pricePerUnit()).isEqualByComparingTo(new BigDecimal("5.00"));
+        }));
+    }
+
+    @Test
+    void getOrderVersion_ShouldChangeWhenOrderIsPaidOrCancelled() {
+        StoredProduct product = new StoredProduct("Test Product", 10, new BigDecimal("99.99"));
+        entityManager.persist(product);
+        StoredOrder paid = new StoredOrder();
+        StoredOrder cancelled = new StoredOrder();
+        for (StoredOrder order : List.of(paid, cancelled)) {
+            StoredOrderItem orderItem = new StoredOrderItem(order, product, 1);
+            orderItem.setTotalPrice(new BigDecimal("99.99"));
+            order.setOrderItems(new ArrayList<>(List.of(orderItem)));
+            order.setTotalAmount(new BigDecimal("99.99"));
+            entityManager.persist(order);
+        }
+        entityManager.flush();
+        String paidVersion = orderService.getOrderVersion(paid.getId());
+        String cancelledVersion = orderService.getOrderVersion(cancelled.getId());
+
+        assertThat(orderService.getOrderVersion(paid.getId())).isEqualTo(paidVersion);
+
+        orderService.payOrder(paid.getId());
+        orderService.cancelOrder(cancelled.getId());
+
+        assertThat(orderService.getOrderVersion(paid.getId())).isNotEqualTo(paidVersion);
+        assertThat(orderService.getOrderVersion(cancelled.getId())).isNotEqualTo(cancelledVersion);
+    }
+
+    private Statistics statistics() {
+        Statistics statistics = entityManager.getEntityManager().getEntityManagerFactory()
+                .unwrap(SessionFactory.class)
+                .getStatistics();
+        statistics.clear();
+        return statistics;
+    }
+}
@@ -0,0 +1,71 @@
+package com.klepek.order;
+
+import com.klepek.exceptions.InsufficientStockException;
+import com.klepek.model.Order;
+import com.klepek.model.OrderStatus;
+import com.klepek.model.Product;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.OptimisticLockingFailureException;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class OptimisticRetryTest {
+
+    private static final Order ORDER = new Order(1L, List.of(new Product(1L, 5)), OrderStatus.PAID);
+
+    private OrderService target;
+
+    private Counter retries;
+
+    private OrderService orderService;
+
+    @BeforeEach
+    void setUp() {
+        target = mock(OrderService.class);
+        retries = new SimpleMeterRegistry().counter("orders.optimistic.retries");
+        orderService = OptimisticRetry.wrap(target, 3, 1, 2, retries);
+    }
+
+    @Test
+    void wrap_ShouldRunTheCallAgainAfterAVersionConflict() {
+        when(target.payOrder(1L))
+                .thenThrow(new OptimisticLockingFailureException("Order 1 was changed concurrently"))
+                .thenReturn(ORDER);
+
+        assertThat(orderService.payOrder(1L)).isSameAs(ORDER);
+        verify(target, times(2)).payOrder(1L);
+        assertThat(retries.count()).isEqualTo(1);
+    }
+
+    @Test
+    void wrap_ShouldGiveUpAfterMaxAttempts() {
+        when(target.cancelOrder(1L)).thenThrow(new OptimisticLockingFailureException("Order 1 was changed concurrently"));
+
+        assertThatThrownBy(() -> orderService.cancelOrder(1L)).isInstanceOf(OptimisticLockingFailureException.class);
+        verify(target, times(3)).cancelOrder(1L);
+        assertThat(retries.count()).isEqualTo(2);
+    }
+
+    @Test
+    void wrap_ShouldNotRetryBusinessRejectionsOrReads() {
+        when(target.createOrder(any())).thenThrow(new InsufficientStockException("Insufficient stock for product: Test"));
+        when(target.getOrder(1L)).thenThrow(new OptimisticLockingFailureException("Order 1 was changed concurrently"));
+
+        assertThatThrownBy(() -> orderService.createOrder(ORDER)).isInstanceOf(InsufficientStockException.class);
+        assertThatThrownBy(() -> orderService.getOrder(1L)).isInstanceOf(OptimisticLockingFailureException.class);
+        verify(target, times(1)).createOrder(any());
+        verify(target, times(1)).getOrder(1L);
+        assertThat(retries.count()).isZero();
+    }
+}
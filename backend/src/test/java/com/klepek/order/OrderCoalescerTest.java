@@ -0,0 +1,135 @@
+package com.klepek.order;
+
+import com.klepek.exceptions.InsufficientStockException;
+import com.klepek.model.Order;
+import com.klepek.model.OrderResult;
+import com.klepek.model.OrderStatus;
+import com.klepek.model.Product;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class OrderCoalescerTest {
+
+    private OrderService orderService;
+
+    private OrderCoalescer coalescer;
+
+    @BeforeEach
+    void setUp() {
+        orderService = mock(OrderService.class);
+        // one stripe and a long window, so concurrent callers land in the same batch
+        coalescer = new OrderCoalescer(orderService, 1, 500, 10, 100, 5000);
+    }
+
+    @AfterEach
+    void tearDown() {
+        coalescer.stop();
+    }
+
+    @Test
+    void createOrder_ShouldCreateConcurrentOrdersInOneBatch() {
+        when(orderService.createOrders(anyList())).thenAnswer(invocation -> {
+            List<Order> orders = invocation.getArgument(0);
+            List<OrderResult> results = new ArrayList<>();
+            for (int i = 0; i < orders.size(); i++) {
+                results.add(OrderResult.created(i, new Order((long) i + 1, orders.get(i).products(), OrderStatus.CREATED)));
+            }
+            return results;
+        });
+        ExecutorService executor = Executors.newFixedThreadPool(10);
+        CountDownLatch start = new CountDownLatch(1);
+        List<CompletableFuture<Order>> callers = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            Order order = new Order(null, List.of(new Product(1L, i + 1)), OrderStatus.CREATED);
+            callers.add(CompletableFuture.supplyAsync(() -> {
+                awaitQuietly(start);
+                return coalescer.createOrder(order);
+            }, executor));
+        }
+
+        start.countDown();
+
+        assertThat(callers).allSatisfy(caller -> assertThat(caller.join().status()).isEqualTo(OrderStatus.CREATED));
+        assertThat(callers.stream().map(caller -> caller.join().products().getFirst().quantity()))
+                .containsExactlyInAnyOrder(1, 2, 3, 4, 5, 6, 7, 8, 9, 10);
+        verify(orderService, times(1)).createOrders(anyList());
+        executor.shutdown();
+    }
+
+    @Test
+    void createOrder_WhenRejectedInTheBatch_ShouldThrowTheExceptionOfASingleCreate() {
+        Order order = new Order(null, List.of(new Product(1L, 50)), OrderStatus.CREATED);
+        when(orderService.createOrders(anyList()))
+                .thenReturn(List.of(OrderResult.failed(0, new InsufficientStockException("Insufficient stock for product: Test"))));
+
+        assertThatThrownBy(() -> coalescer.createOrder(order))
+                .isInstanceOf(InsufficientStockException.class)
+                .hasMessageContaining("Insufficient stock");
+        verify(orderService, never()).createOrder(any());
+    }
+
+    @Test
+    void createOrder_WhenTheBatchFails_ShouldFailEveryCaller() {
+        when(orderService.createOrders(anyList())).thenThrow(new IllegalStateException("database is down"));
+
+        assertThatThrownBy(() -> coalescer.createOrder(new Order(null, List.of(new Product(1L, 1)), OrderStatus.CREATED)))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessage("database is down");
+    }
+
+    @Test
+    void createOrder_WhenTheBatchThrowsAnError_ShouldFailTheCallerAndKeepTheWriterRunning() {
+        when(orderService.createOrders(anyList()))
+                .thenThrow(new StackOverflowError())
+                .thenReturn(List.of(OrderResult.created(0, new Order(1L, List.of(new Product(1L, 1)), OrderStatus.CREATED))));
+
+        assertThatThrownBy(() -> coalescer.createOrder(new Order(null, List.of(new Product(1L, 1)), OrderStatus.CREATED)))
+                .isInstanceOf(IllegalStateException.class)
+                .hasCauseInstanceOf(StackOverflowError.class);
+        assertThat(coalescer.createOrder(new Order(null, List.of(new Product(1L, 1)), OrderStatus.CREATED)).orderNumber()).isEqualTo(1L);
+    }
+
+    @Test
+    void createOrder_WhenTheBatchDoesNotCompleteInTime_ShouldStopWaiting() {
+        CountDownLatch release = new CountDownLatch(1);
+        when(orderService.createOrders(anyList())).thenAnswer(invocation -> {
+            awaitQuietly(release);
+            return List.of();
+        });
+        OrderCoalescer impatient = new OrderCoalescer(orderService, 1, 0, 10, 100, 100);
+        try {
+            assertThatThrownBy(() -> impatient.createOrder(new Order(null, List.of(new Product(1L, 1)), OrderStatus.CREATED)))
+                    .isInstanceOf(IllegalStateException.class)
+                    .hasMessageContaining("did not complete");
+        } finally {
+            release.countDown();
+            impatient.stop();
+        }
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package com.klepek.order;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.klepek.model.OrderStatus;
+import com.klepek.model.StoredOrder;
+import com.klepek.model.StoredOrderItem;
+import com.klepek.model.StoredProduct;
+import com.klepek.outbox.OrderOutbox;
+import com.klepek.repository.OrderEventsRepository;
+import com.klepek.repository.OrderViewsRepository;
+import com.klepek.repository.OrdersRepository;
+import com.klepek.repository.ProductRepository;
+import com.klepek.stock.StockReservationEngine;
+import com.klepek.stock.StockWriteMode;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("test")
+class OrderExpirySweeperTest {
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private OrdersRepository ordersRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private OrderEventsRepository orderEventsRepository;
+
+    @Autowired
+    private OrderViewsRepository orderViewsRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private StockReservationEngine stockReservationEngine;
+
+    private OrderExpiryWheel orderExpiryWheel;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private OrderExpirySweeper sweeper;
+
+    @BeforeEach
+    void setUp() {
+        stockReservationEngine = new StockReservationEngine(productRepository, StockWriteMode.WRITE_BEHIND);
+        orderExpiryWheel = new OrderExpiryWheel(1000);
+        meterRegistry = new SimpleMeterRegistry();
+        OrderViews orderViews = new OrderViews(orderViewsRepository, ordersRepository, new ObjectMapper(), transactionManager);
+        DefaultOrderService orderService = new DefaultOrderService(ordersRepository, productRepository, stockReservationEngine, orderExpiryWheel, new OrderVersions(), new OrderOutbox(orderEventsRepository), orderViews,
+                new OrderMetrics(ordersRepository, productRepository, stockReservationEngine, new SimpleMeterRegistry()), ConcurrencyMode.PESSIMISTIC);
+        sweeper = new OrderExpirySweeper(ordersRepository, orderService, orderExpiryWheel, transactionManager, meterRegistry, 2);
+    }
+
+    @Test
+    void expireOrders_ShouldCancelExpiredOrdersAcrossPagesAndRestoreStock() {
+        StoredProduct product = new StoredProduct("Test Product", 5, new BigDecimal("99.99"));
+        entityManager.persist(product);
+        List<StoredOrder> expiredOrders = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            expiredOrders.add(persistOrder(product, 1, OrderStatus.CREATED, LocalDateTime.now().minusMinutes(1)));
+        }
+        entityManager.flush();
+
+        sweeper.sweep();
+        int expired = (int) meterRegistry.get("orders.expired").tag("trigger", "sweep").counter().count();
+        assertThat(stockReservationEngine.getAvailable(product.getId())).isEqualTo(10);
+        stockReservationEngine.flush();
+        entityManager.flush();
+        entityManager.clear();
+
+        assertThat(expired).isEqualTo(5);
+        assertThat(meterRegistry.get("orders.expiry.duration").tag("trigger", "sweep").timer().count()).isEqualTo(1);
+        for (StoredOrder order : expiredOrders) {
+            assertThat(entityManager.find(StoredOrder.class, order.getId()).getStatus()).isEqualTo(OrderStatus.CANCELLED);
+        }
+        assertThat(entityManager.find(StoredProduct.class, product.getId()).getStockQuantity()).isEqualTo(10);
+    }
+
+    @Test
+    void expireOrders_ShouldSkipOrdersThatAreNotExpiredOrNotCreated() {
+        StoredProduct product = new StoredProduct("Test Product", 5, new BigDecimal("99.99"));
+        entityManager.persist(product);
+        StoredOrder pending = persistOrder(product, 1, OrderStatus.CREATED, LocalDateTime.now().plusMinutes(10));
+        StoredOrder paid = persistOrder(product, 1, OrderStatus.PAID, LocalDateTime.now().minusMinutes(1));
+        entityManager.flush();
+
+        int expired = sweeper.expireOrders(LocalDateTime.now());
+        entityManager.clear();
+
+        assertThat(expired).isZero();
+        assertThat(entityManager.find(StoredOrder.class, pending.getId()).getStatus()).isEqualTo(OrderStatus.CREATED);
+        assertThat(entityManager.find(StoredOrder.class, paid.getId()).getStatus()).isEqualTo(OrderStatus.PAID);
+    }
+
+    @Test
+    void rebuildWheel_ShouldScheduleOpenOrdersAndExpireThemOnTick() {
+        StoredProduct product = new StoredProduct("Test Product", 5, new BigDecimal("99.99"));
+        entityManager.persist(product);
+        StoredOrder overdue = persistOrder(product, 1, OrderStatus.CREATED, LocalDateTime.now().minusSeconds(5));
+        StoredOrder pending = persistOrder(product, 1, OrderStatus.CREATED, LocalDateTime.now().plusMinutes(10));
+        persistOrder(product, 1, OrderStatus.PAID, LocalDateTime.now().minusSeconds(5));
+        entityManager.flush();
+
+        sweeper.rebuildWheel();
+        int expired = sweeper.expireDueOrders(LocalDateTime.now().plusSeconds(2));
+        entityManager.flush();
+        entityManager.clear();
+
+        assertThat(expired).isEqualTo(1);
+        assertThat(orderExpiryWheel.size()).isEqualTo(1);
+        assertThat(entityManager.find(StoredOrder.class, overdue.getId()).getStatus()).isEqualTo(OrderStatus.CANCELLED);
+        assertThat(entityManager.find(StoredOrder.class, pending.getId()).getStatus()).isEqualTo(OrderStatus.CREATED);
+    }
+
+    private StoredOrder persistOrder(StoredProduct product, int quantity, OrderStatus status, LocalDateTime expiresAt) {
+        StoredOrder order = new StoredOrder();
+        StoredOrderItem orderItem = new StoredOrderItem(order, product, quantity);
+        orderItem.setTotalPrice(product.getPricePerUnit().multiply(new BigDecimal(quantity)));
+        List<StoredOrderItem> orderItems = new ArrayList<>();
+        orderItems.add(orderItem);
+        order.setOrderItems(orderItems);
+        order.setTotalAmount(orderItem.getTotalPrice());
+        order.setStatus(status);
+        order.setExpiresAt(expiresAt);
+        entityManager.persist(order);
+        return order;
+    }
+}
@@ -0,0 +1,84 @@
+package com.klepek.order;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class OrderExpiryWheelTest {
+
+    private OrderExpiryWheel wheel;
+
+    private LocalDateTime now;
+
+    @BeforeEach
+    void setUp() {
+        wheel = new OrderExpiryWheel(1000);
+        now = LocalDateTime.now();
+    }
+
+    @Test
+    void advance_ShouldReturnOrderOnlyOnceItsDeadlinePassed() {
+        wheel.schedule(1L, now.plusSeconds(10));
+
+        assertThat(wheel.advance(now.plusSeconds(5))).isEmpty();
+        assertThat(wheel.advance(now.plusSeconds(12))).containsExactly(1L);
+        assertThat(wheel.advance(now.plusSeconds(20))).isEmpty();
+        assertThat(wheel.size()).isZero();
+    }
+
+    @Test
+    void advance_WhenOrderWasCancelled_ShouldNotReturnIt() {
+        wheel.schedule(1L, now.plusSeconds(10));
+        wheel.cancel(1L);
+
+        assertThat(wheel.advance(now.plusSeconds(12))).isEmpty();
+        assertThat(wheel.size()).isZero();
+    }
+
+    @Test
+    void advance_WhenDeadlineIsBeyondOneRevolution_ShouldWaitForIt() {
+        wheel.schedule(1L, now.plusMinutes(90));
+
+        assertThat(wheel.advance(now.plusMinutes(60))).isEmpty();
+        assertThat(wheel.advance(now.plusMinutes(90).plusSeconds(2))).containsExactly(1L);
+    }
+
+    @Test
+    void schedule_WhenDeadlineAlreadyPassed_ShouldBeDueOnNextTick() {
+        wheel.schedule(1L, now.minusMinutes(5));
+
+        assertThat(wheel.advance(now.plusSeconds(2))).containsExactly(1L);
+    }
+
+    @Test
+    void schedule_WhileAdvancing_ShouldNeverLeaveADueOrderBehindTheCursor() throws Exception {
+        int ticks = 2_000;
+        int orders = 20_000;
+        Set<Long> expired = new HashSet<>();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+
+        Future<?> scheduling = executor.submit(() -> {
+            for (long id = 1; id <= orders; id++) {
+                wheel.schedule(id, now.minusSeconds(1));
+            }
+        });
+        for (int tick = 1; tick <= ticks; tick++) {
+            expired.addAll(wheel.advance(now.plusSeconds(tick)));
+        }
+        scheduling.get(10, TimeUnit.SECONDS);
+        executor.shutdown();
+        expired.addAll(wheel.advance(now.plusSeconds(ticks + 2)));
+
+        assertThat(expired).hasSize(orders);
+        assertThat(wheel.size()).isZero();
+    }
+}
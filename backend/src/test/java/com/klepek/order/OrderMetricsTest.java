@@ -0,0 +1,63 @@
+package com.klepek.order;
+
+import com.klepek.model.OrderStatus;
+import com.klepek.model.ReservedStock;
+import com.klepek.model.StoredProduct;
+import com.klepek.repository.OrdersRepository;
+import com.klepek.repository.ProductRepository;
+import com.klepek.stock.StockReservationEngine;
+import com.klepek.stock.StockWriteMode;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class OrderMetricsTest {
+
+    private ProductRepository productRepository;
+
+    private StockReservationEngine stockReservationEngine;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private OrderMetrics orderMetrics;
+
+    @BeforeEach
+    void setUp() {
+        OrdersRepository ordersRepository = mock(OrdersRepository.class);
+        productRepository = mock(ProductRepository.class);
+        when(ordersRepository.countByStatus(OrderStatus.CREATED)).thenReturn(3L);
+        when(productRepository.findReservedQuantities()).thenReturn(List.of(new ReservedStock(3L, 4L)));
+        stockReservationEngine = new StockReservationEngine(productRepository, StockWriteMode.WRITE_BEHIND);
+        meterRegistry = new SimpleMeterRegistry();
+        orderMetrics = new OrderMetrics(ordersRepository, productRepository, stockReservationEngine, meterRegistry);
+        orderMetrics.init();
+    }
+
+    @Test
+    void openOrders_ShouldStartFromStoredCountAndFollowCommittedChanges() {
+        orderMetrics.opened();
+        orderMetrics.opened();
+        orderMetrics.closed();
+
+        assertThat(meterRegistry.get("orders.open").gauge().value()).isEqualTo(4);
+    }
+
+    @Test
+    void reservedUnits_ShouldReadStoredCountUntilEngineTouchesProduct() {
+        StoredProduct product = new StoredProduct("Product 1", 10, new BigDecimal("9.99"));
+        product.setId(1L);
+
+        stockReservationEngine.reserve(product, 2);
+        stockReservationEngine.reserve(product, 3);
+
+        assertThat(meterRegistry.get("stock.reserved").tag("product", "1").gauge().value()).isEqualTo(5);
+        assertThat(meterRegistry.get("stock.reserved").tag("product", "3").gauge().value()).isEqualTo(4);
+    }
+}
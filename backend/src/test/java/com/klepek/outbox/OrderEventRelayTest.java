@@ -0,0 +1,101 @@
+package com.klepek.outbox;
+
+import com.klepek.model.OrderEvent;
+import com.klepek.model.OrderEventType;
+import com.klepek.model.OrderStatus;
+import com.klepek.model.StoredOrderEvent;
+import com.klepek.repository.OrderEventsRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Pageable;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class OrderEventRelayTest {
+
+    private OrderEventsRepository orderEventsRepository;
+
+    private List<OrderEvent> delivered;
+
+    private OrderEventSink failingSink;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() {
+        orderEventsRepository = mock(OrderEventsRepository.class);
+        delivered = new ArrayList<>();
+        failingSink = mock(OrderEventSink.class);
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @Test
+    void drain_ShouldDeliverBatchesInOrderAndDeleteThem() {
+        StoredOrderEvent first = event(1L, OrderEventType.CREATED);
+        StoredOrderEvent second = event(1L, OrderEventType.PAID);
+        StoredOrderEvent third = event(2L, OrderEventType.CREATED);
+        when(orderEventsRepository.findOldest(any(Pageable.class)))
+                .thenReturn(List.of(first, second))
+                .thenReturn(List.of(third));
+        OrderEventRelay relay = new OrderEventRelay(orderEventsRepository, List.of(delivered::addAll), meterRegistry, 2, 500);
+
+        relay.drain();
+
+        assertThat(delivered).extracting(OrderEvent::type)
+                .containsExactly(OrderEventType.CREATED, OrderEventType.PAID, OrderEventType.CREATED);
+        verify(orderEventsRepository).deleteAllByIdInBatch(List.of(first.getId(), second.getId()));
+        verify(orderEventsRepository).deleteAllByIdInBatch(List.of(third.getId()));
+        assertThat(meterRegistry.get("outbox.published").counter().count()).isEqualTo(3);
+        assertThat(meterRegistry.get("outbox.lag").gauge().value()).isZero();
+    }
+
+    @Test
+    void drain_WhenSinkFails_ShouldKeepBatchForNextDrain() {
+        StoredOrderEvent event = event(1L, OrderEventType.CREATED);
+        LocalDateTime occurredAt = event.getOccurredAt();
+        when(orderEventsRepository.findOldest(any(Pageable.class))).thenReturn(List.of(event));
+        when(orderEventsRepository.findOldestOccurredAt()).thenReturn(occurredAt.minusSeconds(30));
+        doThrow(new IllegalStateException("webhook down")).when(failingSink).publish(anyList());
+        OrderEventRelay relay = new OrderEventRelay(orderEventsRepository, List.of(failingSink), meterRegistry, 10, 500);
+
+        relay.drain();
+
+        verify(orderEventsRepository, never()).deleteAllByIdInBatch(any());
+        assertThat(meterRegistry.get("outbox.failures").counter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("outbox.lag").gauge().value()).isGreaterThanOrEqualTo(30);
+    }
+
+    @Test
+    void drain_WhenLagQueryFails_ShouldNotThrowOutOfTheScheduledTask() {
+        when(orderEventsRepository.findOldest(any(Pageable.class))).thenReturn(List.of());
+        when(orderEventsRepository.findOldestOccurredAt()).thenThrow(new IllegalStateException("connection pool exhausted"));
+        OrderEventRelay relay = new OrderEventRelay(orderEventsRepository, List.of(delivered::addAll), meterRegistry, 10, 500);
+
+        relay.drain();
+
+        assertThat(meterRegistry.get("outbox.failures").counter().count()).isZero();
+    }
+
+    private StoredOrderEvent event(Long orderId, OrderEventType type) {
+        StoredOrderEvent event = mock(StoredOrderEvent.class);
+        long id = System.nanoTime();
+        OrderStatus status = type == OrderEventType.PAID ? OrderStatus.PAID : OrderStatus.CREATED;
+        LocalDateTime occurredAt = LocalDateTime.now();
+        when(event.getId()).thenReturn(id);
+        when(event.getOccurredAt()).thenReturn(occurredAt);
+        when(event.toOrderEvent()).thenReturn(new OrderEvent(id, orderId, type, status, occurredAt));
+        return event;
+    }
+}
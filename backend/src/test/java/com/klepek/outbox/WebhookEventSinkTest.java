@@ -0,0 +1,78 @@
+package com.klepek.outbox;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.klepek.model.OrderEvent;
+import com.klepek.model.OrderEventType;
+import com.klepek.model.OrderStatus;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.client.HttpServerErrorException;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+// the webhook is a local stub server, so the test covers the real HTTP round trip without a network
+class WebhookEventSinkTest {
+
+    private static final List<OrderEvent> EVENTS = List.of(
+            new OrderEvent(1L, 10L, OrderEventType.CREATED, OrderStatus.CREATED, LocalDateTime.of(2024, 3, 1, 12, 0)),
+            new OrderEvent(2L, 10L, OrderEventType.PAID, OrderStatus.PAID, LocalDateTime.of(2024, 3, 1, 12, 5))
+    );
+
+    private final ObjectMapper objectMapper = new ObjectMapper()
+            .findAndRegisterModules()
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+
+    private final List<String> received = new CopyOnWriteArrayList<>();
+
+    private final AtomicInteger status = new AtomicInteger(204);
+
+    private HttpServer server;
+
+    private WebhookEventSink sink;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/events", exchange -> {
+            received.add(new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8));
+            exchange.sendResponseHeaders(status.get(), -1);
+            exchange.close();
+        });
+        server.start();
+        sink = new WebhookEventSink(objectMapper, "http://localhost:" + server.getAddress().getPort() + "/events", 2000);
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    void publish_ShouldPostBatchAsOneJsonArray() throws IOException {
+        sink.publish(EVENTS);
+
+        assertThat(received).hasSize(1);
+        List<?> posted = objectMapper.readValue(received.getFirst(), List.class);
+        assertThat(posted).hasSize(2);
+        assertThat(received.getFirst()).contains("\"type\":\"PAID\"", "\"occurredAt\":\"2024-03-01T12:05:00\"");
+    }
+
+    @Test
+    void publish_WhenWebhookFails_ShouldThrowSoTheBatchIsRetried() {
+        status.set(503);
+
+        assertThatThrownBy(() -> sink.publish(EVENTS)).isInstanceOf(HttpServerErrorException.class);
+    }
+}
@@ -1,11 +1,14 @@
 package com.klepek.product;
 
 import com.klepek.model.Product;
+import com.klepek.model.StockLevel;
 import com.klepek.model.StoredProduct;
 import com.klepek.model.StoredOrder;
 import com.klepek.model.StoredOrderItem;
 import com.klepek.repository.ProductRepository;
-import com.klepek.repository.OrderItemsRepository;
+import com.klepek.stock.StockReservationEngine;
+import com.klepek.stock.StockWriteMode;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -32,14 +35,18 @@ class DefaultProductServiceTest {
     @Autowired
     private ProductRepository productRepository;
 
-    @Autowired
-    private OrderItemsRepository orderItemsRepository;
+    private StockReservationEngine stockReservationEngine;
 
     private DefaultProductService productService;
 
     @BeforeEach
     void setUp() {
-        productService = new DefaultProductService(productRepository, orderItemsRepository);
+        stockReservationEngine = new StockReservationEngine(productRepository, StockWriteMode.WRITE_BEHIND);
+        productService = new DefaultProductService(
+                productRepository,
+                stockReservationEngine,
+                new ProductCatalog(productRepository, stockReservationEngine, new SimpleMeterRegistry())
+        );
     }
 
     @Test
@@ -147,6 +154,7 @@ class DefaultProductServiceTest {
 
         entityManager.persist(order);
         entityManager.persist(orderItem);
+        stockReservationEngine.reserve(product, 5);
 
         entityManager.flush();
 
@@ -156,4 +164,48 @@ class DefaultProductServiceTest {
 
         assertThat(entityManager.find(StoredProduct.class, product.getId())).isNotNull();
     }
-} 
+
+    @Test
+    void deleteProduct_WhenAllOrdersWereCancelled_ShouldReturnTrue() {
+        StoredProduct product = new StoredProduct("Test Product", 10, new BigDecimal("99.99"));
+        entityManager.persist(product);
+        entityManager.flush();
+        stockReservationEngine.reserve(product, 5);
+        stockReservationEngine.release(product, 5);
+
+        boolean result = productService.deleteProduct(product.getId());
+
+        assertThat(result).isTrue();
+    }
+
+    @Test
+    void getStockLevel_ShouldSplitReservedFromAvailable() {
+        StoredProduct product = new StoredProduct("Test Product", 10, new BigDecimal("99.99"));
+        entityManager.persist(product);
+        entityManager.flush();
+
+        assertThat(productService.getStockLevel(product.getId())).contains(new StockLevel(product.getId(), 10, 0));
+
+        stockReservationEngine.reserve(product, 4);
+
+        assertThat(productService.getStockLevel(product.getId())).contains(new StockLevel(product.getId(), 6, 4));
+        assertThat(productService.getStockLevel(999L)).isEmpty();
+    }
+
+    @Test
+    void exportProducts_ShouldStreamAllProductsInIdOrder() {
+        StoredProduct first = new StoredProduct("First", 10, new BigDecimal("1.00"));
+        StoredProduct second = new StoredProduct("Second", 20, new BigDecimal("2.00"));
+        entityManager.persist(first);
+        entityManager.persist(second);
+        entityManager.flush();
+        List<Product> exported = new ArrayList<>();
+
+        productService.exportProducts(exported::add);
+
+        assertThat(exported).containsExactly(
+                new Product(first.getId(), "First", 10, new BigDecimal("1.00")),
+                new Product(second.getId(), "Second", 20, new BigDecimal("2.00"))
+        );
+    }
+}
@@ -0,0 +1,125 @@
+package com.klepek.product;
+
+import com.klepek.model.Product;
+import com.klepek.model.StoredProduct;
+import com.klepek.repository.ProductRepository;
+import com.klepek.stock.StockReservationEngine;
+import com.klepek.stock.StockWriteMode;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ProductCatalogTest {
+
+    private ProductRepository productRepository;
+
+    private StockReservationEngine stockReservationEngine;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private ProductCatalog catalog;
+
+    private StoredProduct first;
+
+    private StoredProduct second;
+
+    @BeforeEach
+    void setUp() {
+        productRepository = mock(ProductRepository.class);
+        stockReservationEngine = new StockReservationEngine(productRepository, StockWriteMode.WRITE_BEHIND);
+        meterRegistry = new SimpleMeterRegistry();
+        catalog = new ProductCatalog(productRepository, stockReservationEngine, meterRegistry);
+        first = product(1L, "First", 10);
+        second = product(2L, "Second", 20);
+        when(productRepository.findAll()).thenReturn(List.of(first, second));
+    }
+
+    @Test
+    void getProducts_ShouldServeRepeatedReadsFromOneLoad() {
+        List<Product> firstRead = catalog.getProducts();
+        List<Product> secondRead = catalog.getProducts();
+
+        assertThat(secondRead).isSameAs(firstRead);
+        assertThat(firstRead).extracting("name").containsExactly("First", "Second");
+        verify(productRepository, times(1)).findAll();
+        assertThat(meterRegistry.get("catalog.requests").tag("result", "hit").counter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("catalog.requests").tag("result", "miss").counter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("catalog.hit.ratio").gauge().value()).isEqualTo(0.5);
+    }
+
+    @Test
+    void invalidate_ShouldReloadOnNextReadAndBumpVersion() {
+        catalog.getProducts();
+        String version = catalog.version();
+
+        catalog.invalidate();
+        catalog.getProducts();
+
+        verify(productRepository, times(2)).findAll();
+        assertThat(catalog.version()).isNotEqualTo(version);
+    }
+
+    @Test
+    void stockChange_ShouldPatchSnapshotWithoutReloadingAndMoveVersion() {
+        catalog.getProducts();
+        String version = catalog.version();
+
+        stockReservationEngine.reserve(first, 3);
+        stockReservationEngine.reserve(second, 5);
+        List<Product> products = catalog.getProducts();
+
+        assertThat(products).extracting("quantity").containsExactly(7, 15);
+        assertThat(catalog.getProducts()).isSameAs(products);
+        assertThat(catalog.version()).isNotEqualTo(version);
+        assertThat(catalog.getSnapshot().version()).isEqualTo(catalog.version());
+        verify(productRepository, times(1)).findAll();
+    }
+
+    @Test
+    void invalidate_ShouldNotFoldStockReportedBeforeTheReload() {
+        stockReservationEngine.reserve(first, 3);
+        catalog.getProducts();
+
+        first.setStockQuantity(50);
+        stockReservationEngine.evict(first.getId());
+        catalog.invalidate();
+
+        assertThat(catalog.getProducts()).extracting("quantity").containsExactly(50, 20);
+    }
+
+    @Test
+    void getSnapshot_ShouldReturnVersionOfTheListItCarries() {
+        CatalogSnapshot snapshot = catalog.getSnapshot();
+
+        assertThat(snapshot.version()).isEqualTo(catalog.version());
+        assertThat(catalog.getSnapshot()).isEqualTo(snapshot);
+
+        stockReservationEngine.reserve(first, 1);
+
+        assertThat(catalog.getSnapshot().version()).isNotEqualTo(snapshot.version());
+    }
+
+    @Test
+    void getProducts_ShouldPreferUnflushedEngineCounterOverStoredQuantity() {
+        stockReservationEngine.reserve(second, 5);
+
+        List<Product> products = catalog.getProducts();
+
+        assertThat(products).extracting("quantity").containsExactly(10, 15);
+    }
+
+    private StoredProduct product(Long id, String name, int stock) {
+        StoredProduct product = new StoredProduct(name, stock, new BigDecimal("9.99"));
+        product.setId(id);
+        return product;
+    }
+}
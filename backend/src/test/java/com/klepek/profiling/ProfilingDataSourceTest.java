@@ -0,0 +1,48 @@
+package com.klepek.profiling;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ProfilingDataSourceTest {
+
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void setUp() {
+        DriverManagerDataSource target = new DriverManagerDataSource("jdbc:h2:mem:profiling;DB_CLOSE_DELAY=-1", "sa", "");
+        jdbcTemplate = new JdbcTemplate(new ProfilingDataSource(target));
+        jdbcTemplate.execute("drop table if exists items");
+        jdbcTemplate.execute("create table items (id bigint primary key, name varchar(32))");
+    }
+
+    @Test
+    void getConnection_ShouldCountStatementsAndFetchedRowsOnTheCallingThread() {
+        QueryProfile profile = QueryProfile.current();
+        QueryProfile.Usage start = profile.usage();
+
+        jdbcTemplate.update("insert into items values (?, ?)", 1, "first");
+        jdbcTemplate.update("insert into items values (?, ?)", 2, "second");
+        List<String> names = jdbcTemplate.queryForList("select name from items order by id", String.class);
+
+        QueryProfile.Usage usage = profile.since(start);
+        assertThat(names).containsExactly("first", "second");
+        assertThat(usage.statements()).isEqualTo(3);
+        assertThat(usage.rows()).isEqualTo(2);
+        assertThat(usage.sqlNanos()).isPositive();
+    }
+
+    @Test
+    void getConnection_ShouldCountBatchAsOneStatement() {
+        QueryProfile.Usage start = QueryProfile.current().usage();
+
+        jdbcTemplate.batchUpdate("insert into items values (?, ?)", List.of(new Object[]{1, "a"}, new Object[]{2, "b"}, new Object[]{3, "c"}));
+
+        assertThat(QueryProfile.current().since(start).statements()).isEqualTo(1);
+    }
+}
@@ -0,0 +1,120 @@
+package com.klepek.rest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.klepek.exceptions.OrdersBusyException;
+import com.klepek.model.Order;
+import com.klepek.model.OrderStatus;
+import com.klepek.model.Product;
+import com.klepek.order.AsyncOrderService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockAsyncContext;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@WebMvcTest(AsyncOrdersController.class)
+class AsyncOrdersControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @MockBean
+    private AsyncOrderService asyncOrderService;
+
+    @Test
+    void createOrder_ShouldAnswerOnceTheOrderIsCreated() throws Exception {
+        Order order = new Order(null, List.of(new Product(1L, 5)), OrderStatus.CREATED);
+        when(asyncOrderService.createOrder(any(Order.class), isNull()))
+                .thenReturn(CompletableFuture.completedFuture(new Order(1L, order.products(), OrderStatus.CREATED)));
+
+        MvcResult result = mockMvc.perform(post("/api/v2/orders/")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(order)))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.orderNumber").value(1))
+                .andExpect(jsonPath("$.status").value("CREATED"));
+    }
+
+    @Test
+    void payOrder_WhenWritesAreSaturated_ShouldAnswerServiceUnavailable() throws Exception {
+        when(asyncOrderService.payOrder(eq(1L), isNull()))
+                .thenReturn(CompletableFuture.failedFuture(new OrdersBusyException("Too many pending order writes, retry later")));
+
+        MvcResult result = mockMvc.perform(put("/api/v2/orders/1/pay"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().string("Retry-After", "1"));
+    }
+
+    @Test
+    void createOrder_WhenKeyedWriteTimesOut_ShouldAskForARetry() throws Exception {
+        Order order = new Order(null, List.of(new Product(1L, 5)), OrderStatus.CREATED);
+        when(asyncOrderService.createOrder(any(Order.class), eq("key-1"))).thenReturn(new CompletableFuture<>());
+
+        MvcResult result = mockMvc.perform(post("/api/v2/orders/")
+                        .header("Idempotency-Key", "key-1")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(order)))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        timeOut(result);
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().string("Retry-After", "1"));
+    }
+
+    @Test
+    void payOrder_WhenWriteWithoutKeyTimesOut_ShouldAcceptAndPointAtTheOrder() throws Exception {
+        when(asyncOrderService.payOrder(eq(1L), isNull())).thenReturn(new CompletableFuture<>());
+
+        MvcResult result = mockMvc.perform(put("/api/v2/orders/1/pay"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        timeOut(result);
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isAccepted())
+                .andExpect(header().string("Location", "/api/v2/orders/1"))
+                .andExpect(header().doesNotExist("Retry-After"))
+                .andExpect(content().string("Order request is still being processed"));
+    }
+
+    // MockMvc has no async timer, the container's timeout is fired by hand
+    private static void timeOut(MvcResult result) throws Exception {
+        MockAsyncContext asyncContext = (MockAsyncContext) result.getRequest().getAsyncContext();
+        for (AsyncListener listener : asyncContext.getListeners()) {
+            listener.onTimeout(new AsyncEvent(asyncContext));
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package com.klepek.rest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.klepek.model.Order;
+import com.klepek.model.OrderStatus;
+import com.klepek.model.Product;
+import com.klepek.model.StoredProduct;
+import com.klepek.repository.ProductRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.context.annotation.Bean;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// run with ./gradlew :backend:loadTest; every checkout creates and pays a real order, so on virtual threads more of them
+// are in flight at once than Tomcat has platform threads, and the ones beyond the connection pool wait in Hikari for a
+// connection instead of for a request thread
+@Tag("load")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("virtual-threads")
+class CheckoutLoadTest {
+
+    private static final int CHECKOUTS = 1_000;
+
+    // Tomcat's default server.tomcat.threads.max
+    private static final int PLATFORM_THREAD_CEILING = 200;
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private InFlightFilter inFlightFilter;
+
+    @Test
+    void checkout_ShouldWaitOnTheConnectionPoolRatherThanThePlatformThreadPool() throws Exception {
+        StoredProduct product = productRepository.save(new StoredProduct("Load Product", CHECKOUTS, new BigDecimal("1.00")));
+        String order = objectMapper.writeValueAsString(new Order(null, List.of(new Product(product.getId(), 1)), OrderStatus.CREATED));
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).executor(executor).build();
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<OrderStatus>> checkouts = new ArrayList<>();
+            for (int i = 0; i < CHECKOUTS; i++) {
+                checkouts.add(executor.submit(() -> {
+                    start.await();
+                    Order created = send(client, HttpRequest.newBuilder(uri("/api/v1/orders/"))
+                            .header("Content-Type", "application/json")
+                            .POST(HttpRequest.BodyPublishers.ofString(order)));
+                    Order paid = send(client, HttpRequest.newBuilder(uri("/api/v1/orders/" + created.orderNumber() + "/pay"))
+                            .PUT(HttpRequest.BodyPublishers.noBody()));
+                    return paid.status();
+                }));
+            }
+
+            start.countDown();
+            List<OrderStatus> statuses = new ArrayList<>();
+            for (Future<OrderStatus> checkout : checkouts) {
+                statuses.add(checkout.get(60, TimeUnit.SECONDS));
+            }
+
+            assertThat(statuses).hasSize(CHECKOUTS).containsOnly(OrderStatus.PAID);
+            assertThat(inFlightFilter.peak.get()).isGreaterThan(PLATFORM_THREAD_CEILING);
+            assertThat(inFlightFilter.peakPending.get()).isPositive();
+        }
+    }
+
+    private Order send(HttpClient client, HttpRequest.Builder request) throws IOException, InterruptedException {
+        HttpResponse<String> response = client.send(request.build(), HttpResponse.BodyHandlers.ofString());
+        assertThat(response.statusCode()).isEqualTo(200);
+        return objectMapper.readValue(response.body(), Order.class);
+    }
+
+    private URI uri(String path) {
+        return URI.create("http://localhost:" + port + path);
+    }
+
+    @TestConfiguration
+    static class LoadTestConfiguration {
+
+        @Bean
+        InFlightFilter inFlightFilter(MeterRegistry meterRegistry) {
+            return new InFlightFilter(meterRegistry);
+        }
+    }
+
+    static class InFlightFilter extends OncePerRequestFilter {
+
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final AtomicInteger peak = new AtomicInteger();
+        // requests waiting for a pooled connection, as seen by each request on its way in
+        private final AtomicInteger peakPending = new AtomicInteger();
+        private final MeterRegistry meterRegistry;
+
+        InFlightFilter(MeterRegistry meterRegistry) {
+            this.meterRegistry = meterRegistry;
+        }
+
+        @Override
+        protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+                throws ServletException, IOException {
+            peak.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            Gauge pending = meterRegistry.find("hikaricp.connections.pending").gauge();
+            if (pending != null) {
+                peakPending.accumulateAndGet((int) pending.value(), Math::max);
+            }
+            try {
+                chain.doFilter(request, response);
+            } finally {
+                inFlight.decrementAndGet();
+            }
+        }
+    }
+}
@@ -1,7 +1,12 @@
 package com.klepek.rest;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.klepek.exceptions.IdempotencyKeyReusedException;
+import com.klepek.exceptions.InsufficientStockException;
+import com.klepek.idempotency.IdempotencyStore;
 import com.klepek.model.Order;
+import com.klepek.model.OrderPage;
+import com.klepek.model.OrderResult;
 import com.klepek.model.OrderStatus;
 import com.klepek.model.Product;
 import com.klepek.order.OrderService;
@@ -11,15 +16,25 @@ import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
+import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
 
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @WebMvcTest(OrdersController.class)
@@ -34,6 +49,9 @@ class OrdersControllerTest {
     @MockBean
     private OrderService orderService;
 
+    @MockBean
+    private IdempotencyStore idempotencyStore;
+
     @Test
     void createOrder_ShouldReturnCreatedOrder() throws Exception {
         List<Product> products = new ArrayList<>();
@@ -87,6 +105,7 @@ class OrdersControllerTest {
         products.add(new Product(1L, 5));
         Order order = new Order(1L, products, OrderStatus.CREATED);
 
+        when(orderService.getOrderVersion(eq(1L))).thenReturn("1-0");
         when(orderService.getOrder(eq(1L))).thenReturn(order);
 
         mockMvc.perform(get("/api/v1/orders/1"))
@@ -98,21 +117,128 @@ class OrdersControllerTest {
     }
 
     @Test
-    void getAllOrders_ShouldReturnListOfOrders() throws Exception {
+    void getOrders_ShouldReturnPageWithNextCursor() throws Exception {
         List<Product> products = new ArrayList<>();
         products.add(new Product(1L, 5));
-        List<Order> orders = List.of(
+        OrderPage page = new OrderPage(List.of(
                 new Order(1L, products, OrderStatus.CREATED),
                 new Order(2L, products, OrderStatus.PAID)
+        ), "Mg");
+
+        when(orderService.getOrders(isNull(), isNull(), isNull(), isNull(), eq(20))).thenReturn(page);
+
+        mockMvc.perform(get("/api/v1/orders/"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.orders[0].orderNumber").value(1))
+                .andExpect(jsonPath("$.orders[0].status").value("CREATED"))
+                .andExpect(jsonPath("$.orders[1].orderNumber").value(2))
+                .andExpect(jsonPath("$.orders[1].status").value("PAID"))
+                .andExpect(jsonPath("$.nextCursor").value("Mg"));
+    }
+
+    @Test
+    void getOrders_ShouldPassFiltersAndCursor() throws Exception {
+        when(orderService.getOrders(eq(OrderStatus.PAID), eq(LocalDateTime.of(2025, 1, 1, 0, 0)), isNull(), eq("Mg"), eq(50)))
+                .thenReturn(new OrderPage(List.of(), null));
+
+        mockMvc.perform(get("/api/v1/orders/")
+                        .param("status", "PAID")
+                        .param("createdFrom", "2025-01-01T00:00:00")
+                        .param("cursor", "Mg")
+                        .param("limit", "50"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.orders").isEmpty());
+    }
+
+    @Test
+    void exportOrders_ShouldStreamOneJsonDocumentPerLine() throws Exception {
+        doAnswer(invocation -> {
+            Consumer<Order> consumer = invocation.getArgument(0);
+            consumer.accept(new Order(1L, List.of(new Product(1L, 5)), OrderStatus.CREATED));
+            consumer.accept(new Order(2L, List.of(new Product(2L, 1)), OrderStatus.PAID));
+            return null;
+        }).when(orderService).exportOrders(any());
+
+        MvcResult result = mockMvc.perform(get("/api/v1/orders/export"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("application/x-ndjson"))
+                .andExpect(content().string(
+                        "{\"orderNumber\":1,\"products\":[{\"id\":1,\"name\":null,\"quantity\":5,\"pricePerUnit\":null}],\"status\":\"CREATED\"}\n" +
+                        "{\"orderNumber\":2,\"products\":[{\"id\":2,\"name\":null,\"quantity\":1,\"pricePerUnit\":null}],\"status\":\"PAID\"}\n"));
+    }
+
+    @Test
+    void getOrder_ShouldReturnETag() throws Exception {
+        when(orderService.getOrderVersion(eq(1L))).thenReturn("1-3");
+        when(orderService.getOrder(eq(1L))).thenReturn(new Order(1L, List.of(new Product(1L, 5)), OrderStatus.CREATED));
+
+        mockMvc.perform(get("/api/v1/orders/1"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"1-3\""))
+                .andExpect(jsonPath("$.orderNumber").value(1));
+    }
+
+    @Test
+    void getOrder_WhenETagMatches_ShouldReturnNotModifiedWithoutLoadingOrder() throws Exception {
+        when(orderService.getOrderVersion(eq(1L))).thenReturn("1-3");
+
+        mockMvc.perform(get("/api/v1/orders/1").header("If-None-Match", "\"1-3\""))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+
+        verify(orderService, never()).getOrder(any());
+    }
+
+    @Test
+    void createOrders_ShouldReturnResultPerOrder() throws Exception {
+        List<Order> orders = List.of(
+                new Order(null, List.of(new Product(1L, 5)), OrderStatus.CREATED),
+                new Order(null, List.of(new Product(1L, 500)), OrderStatus.CREATED)
         );
+        when(orderService.createOrders(any())).thenReturn(List.of(
+                OrderResult.created(0, new Order(1L, List.of(new Product(1L, 5)), OrderStatus.CREATED)),
+                OrderResult.failed(1, new InsufficientStockException("Insufficient stock for product: Test Product"))
+        ));
+
+        mockMvc.perform(post("/api/v1/orders/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(orders)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].index").value(0))
+                .andExpect(jsonPath("$[0].order.orderNumber").value(1))
+                .andExpect(jsonPath("$[0].error").doesNotExist())
+                .andExpect(jsonPath("$[1].index").value(1))
+                .andExpect(jsonPath("$[1].order").doesNotExist())
+                .andExpect(jsonPath("$[1].error").value("Insufficient stock for product: Test Product"))
+                .andExpect(jsonPath("$[1].cause").doesNotExist());
+    }
 
-        when(orderService.getAllOrders()).thenReturn(orders);
+    @Test
+    void createOrder_WithIdempotencyKey_ShouldGoThroughIdempotencyStore() throws Exception {
+        Order order = new Order(null, List.of(new Product(1L, 5)), OrderStatus.CREATED);
+        Order createdOrder = new Order(1L, List.of(new Product(1L, 5)), OrderStatus.CREATED);
+        when(idempotencyStore.execute(eq("createOrder"), eq("key-1"), eq("1x5"), any(), any())).thenReturn(createdOrder);
 
-        mockMvc.perform(get("/api/v1/orders/all"))
+        mockMvc.perform(post("/api/v1/orders/")
+                        .header("Idempotency-Key", "key-1")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(order)))
                 .andExpect(status().isOk())
-                .andExpect(jsonPath("$[0].orderNumber").value(1))
-                .andExpect(jsonPath("$[0].status").value("CREATED"))
-                .andExpect(jsonPath("$[1].orderNumber").value(2))
-                .andExpect(jsonPath("$[1].status").value("PAID"));
+                .andExpect(jsonPath("$.orderNumber").value(1));
+
+        verify(orderService, never()).createOrder(any());
+    }
+
+    @Test
+    void payOrder_WhenIdempotencyKeyWasUsedForAnotherOrder_ShouldReturnUnprocessableEntity() throws Exception {
+        when(idempotencyStore.execute(eq("payOrder"), eq("key-1"), eq("2"), any(), any()))
+                .thenThrow(new IdempotencyKeyReusedException("Idempotency-Key was already used for a different request: key-1"));
+
+        mockMvc.perform(put("/api/v1/orders/2/pay").header("Idempotency-Key", "key-1"))
+                .andExpect(status().isUnprocessableEntity());
     }
-} 
+}
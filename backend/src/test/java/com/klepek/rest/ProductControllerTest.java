@@ -2,6 +2,8 @@ package com.klepek.rest;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.klepek.model.Product;
+import com.klepek.model.StockLevel;
+import com.klepek.product.CatalogSnapshot;
 import com.klepek.product.ProductService;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -9,15 +11,24 @@ import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
 import java.math.BigDecimal;
 import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
 
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @WebMvcTest(ProductController.class)
@@ -82,6 +93,19 @@ class ProductControllerTest {
                 .andExpect(status().isNotFound());
     }
 
+    @Test
+    void getStockLevel_ShouldReturnAvailableAndReserved() throws Exception {
+        when(productService.getStockLevel(1L)).thenReturn(Optional.of(new StockLevel(1L, 6, 4)));
+        when(productService.getStockLevel(999L)).thenReturn(Optional.empty());
+
+        mockMvc.perform(get("/api/v1/products/1/stock"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.available").value(6))
+                .andExpect(jsonPath("$.reserved").value(4));
+        mockMvc.perform(get("/api/v1/products/999/stock"))
+                .andExpect(status().isNotFound());
+    }
+
     @Test
     void getAllProducts_ShouldReturnListOfProducts() throws Exception {
         List<Product> products = List.of(
@@ -89,7 +113,8 @@ class ProductControllerTest {
                 new Product(2L, "Product 2", 20, new BigDecimal("149.99"))
         );
 
-        when(productService.getAllProducts()).thenReturn(products);
+        when(productService.getCatalogVersion()).thenReturn("1-1");
+        when(productService.getCatalog()).thenReturn(new CatalogSnapshot("1-1", products));
 
         mockMvc.perform(get("/api/v1/products/all"))
                 .andExpect(status().isOk())
@@ -102,4 +127,46 @@ class ProductControllerTest {
                 .andExpect(jsonPath("$[1].quantity").value(20))
                 .andExpect(jsonPath("$[1].pricePerUnit").value(149.99));
     }
-} 
+
+    @Test
+    void getAllProducts_ShouldReturnETagOfTheServedCatalog() throws Exception {
+        when(productService.getCatalogVersion()).thenReturn("1-4");
+        when(productService.getCatalog()).thenReturn(new CatalogSnapshot("1-5", List.of()));
+
+        mockMvc.perform(get("/api/v1/products/"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"1-5\""));
+    }
+
+    @Test
+    void getAllProducts_WhenETagMatches_ShouldReturnNotModifiedWithoutReadingCatalog() throws Exception {
+        when(productService.getCatalogVersion()).thenReturn("1-5");
+
+        mockMvc.perform(get("/api/v1/products/").header("If-None-Match", "\"1-5\""))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+
+        verify(productService, never()).getCatalog();
+    }
+
+    @Test
+    void exportProducts_ShouldStreamOneJsonDocumentPerLine() throws Exception {
+        doAnswer(invocation -> {
+            Consumer<Product> consumer = invocation.getArgument(0);
+            consumer.accept(new Product(1L, "Product 1", 10, new BigDecimal("99.99")));
+            consumer.accept(new Product(2L, "Product 2", 20, new BigDecimal("149.99")));
+            return null;
+        }).when(productService).exportProducts(any());
+
+        MvcResult result = mockMvc.perform(get("/api/v1/products/export"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("application/x-ndjson"))
+                .andExpect(content().string(
+                        "{\"id\":1,\"name\":\"Product 1\",\"quantity\":10,\"pricePerUnit\":99.99}\n" +
+                        "{\"id\":2,\"name\":\"Product 2\",\"quantity\":20,\"pricePerUnit\":149.99}\n"));
+    }
+}
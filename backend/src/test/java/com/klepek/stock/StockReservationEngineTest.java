@@ -0,0 +1,290 @@
+package com.klepek.stock;
+
+import com.klepek.exceptions.InsufficientStockException;
+import com.klepek.model.StockDelta;
+import com.klepek.model.StoredProduct;
+import com.klepek.repository.ProductRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class StockReservationEngineTest {
+
+    private ProductRepository productRepository;
+
+    private StockReservationEngine engine;
+
+    @BeforeEach
+    void setUp() {
+        productRepository = mock(ProductRepository.class);
+        engine = new StockReservationEngine(productRepository, StockWriteMode.WRITE_BEHIND);
+    }
+
+    @Test
+    void reserve_WhenStockIsSufficient_ShouldDecreaseAvailable() {
+        StoredProduct product = product(1L, 10);
+
+        engine.reserve(product, 4);
+
+        assertThat(engine.getAvailable(1L)).isEqualTo(6);
+    }
+
+    @Test
+    void reserve_WhenStockIsInsufficient_ShouldThrowAndKeepAvailable() {
+        StoredProduct product = product(1L, 3);
+
+        assertThatThrownBy(() -> engine.reserve(product, 4))
+                .isInstanceOf(InsufficientStockException.class)
+                .hasMessageContaining("Insufficient stock for product: Product 1");
+        assertThat(engine.getAvailable(1L)).isEqualTo(3);
+    }
+
+    @Test
+    void reserve_WhenBuyersRaceForHotProduct_ShouldNeverOversell() throws Exception {
+        StoredProduct product = product(1L, 100);
+        int buyers = 32;
+        ExecutorService executor = Executors.newFixedThreadPool(buyers);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger reserved = new AtomicInteger();
+        List<Future<?>> futures = new ArrayList<>();
+
+        for (int i = 0; i < buyers; i++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int attempt = 0; attempt < 10; attempt++) {
+                    try {
+                        engine.reserve(product, 1);
+                        reserved.incrementAndGet();
+                    } catch (InsufficientStockException e) {
+                        // sold out
+                    }
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(10, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        assertThat(reserved.get()).isEqualTo(100);
+        assertThat(engine.getAvailable(1L)).isZero();
+    }
+
+    @Test
+    void reserve_WhenBasketsOverlapInOppositeOrder_ShouldNotDeadlock() throws Exception {
+        StoredProduct first = product(1L, 10_000);
+        StoredProduct second = product(2L, 10_000);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+
+        Future<?> forward = executor.submit(() -> {
+            for (int i = 0; i < 1_000; i++) {
+                engine.reserve(List.of(new StockLine(first, 1), new StockLine(second, 1)));
+            }
+        });
+        Future<?> backward = executor.submit(() -> {
+            for (int i = 0; i < 1_000; i++) {
+                engine.reserve(List.of(new StockLine(second, 1), new StockLine(first, 1)));
+            }
+        });
+        forward.get(10, TimeUnit.SECONDS);
+        backward.get(10, TimeUnit.SECONDS);
+        executor.shutdown();
+
+        assertThat(engine.getAvailable(1L)).isEqualTo(8_000);
+        assertThat(engine.getAvailable(2L)).isEqualTo(8_000);
+    }
+
+    @Test
+    void reserve_WhenAnyLineIsInsufficient_ShouldLeaveAllCountersUntouched() {
+        StoredProduct first = product(1L, 10);
+        StoredProduct second = product(2L, 1);
+
+        assertThatThrownBy(() -> engine.reserve(List.of(new StockLine(first, 5), new StockLine(second, 2))))
+                .isInstanceOf(InsufficientStockException.class);
+
+        assertThat(engine.getAvailable(1L)).isEqualTo(10);
+        assertThat(engine.getAvailable(2L)).isEqualTo(1);
+    }
+
+    @Test
+    void flush_ShouldWriteAccumulatedDeltaOnce() {
+        StoredProduct product = product(1L, 10);
+        engine.reserve(product, 3);
+        engine.reserve(product, 2);
+        engine.release(product, 1);
+
+        engine.flush();
+        engine.flush();
+
+        verify(productRepository, times(1)).applyStockDeltas(Map.of(1L, new StockDelta(-4, 4, 1)));
+    }
+
+    @Test
+    void flush_WhenStoredStockRejectsDelta_ShouldReloadCounter() {
+        StoredProduct product = product(1L, 10);
+        engine.reserve(product, 3);
+        when(productRepository.applyStockDeltas(Map.of(1L, new StockDelta(-3, 3, 1)))).thenReturn(List.of(1L));
+
+        engine.flush();
+        engine.flush();
+
+        assertThat(engine.getAvailable(1L)).isNull();
+        verify(productRepository, times(1)).applyStockDeltas(Map.of(1L, new StockDelta(0, 3, 1)));
+    }
+
+    @Test
+    void flush_WhenWriteFails_ShouldKeepDeltaForNextFlush() {
+        StoredProduct product = product(1L, 10);
+        engine.reserve(product, 3);
+        when(productRepository.applyStockDeltas(Map.of(1L, new StockDelta(-3, 3, 1))))
+                .thenThrow(new IllegalStateException("database unavailable"))
+                .thenReturn(List.of());
+
+        engine.flush();
+        engine.flush();
+
+        verify(productRepository, times(2)).applyStockDeltas(Map.of(1L, new StockDelta(-3, 3, 1)));
+    }
+
+    @Test
+    void evict_ShouldDropBufferedStockDeltaButKeepReservations() {
+        StoredProduct product = product(1L, 10);
+        engine.reserve(product, 3);
+
+        engine.evict(1L);
+        engine.flush();
+
+        assertThat(engine.getAvailable(1L)).isNull();
+        assertThat(engine.getReserved(1L)).isEqualTo(3);
+        verify(productRepository, times(1)).applyStockDeltas(Map.of(1L, new StockDelta(0, 3, 1)));
+    }
+
+    @Test
+    void reserve_AfterEvict_ShouldReloadStoredStockRatherThanCallersEntity() {
+        engine.reserve(product(1L, 10), 3);
+        engine.evict(1L);
+        when(productRepository.findStockQuantity(1L)).thenReturn(20);
+
+        engine.reserve(product(1L, 10), 1);
+
+        assertThat(engine.getAvailable(1L)).isEqualTo(19);
+    }
+
+    @Test
+    void evict_WhileFlushIsWriting_ShouldWaitForTheWrite() throws Exception {
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        engine.reserve(product(1L, 10), 3);
+        when(productRepository.applyStockDeltas(anyMap())).thenAnswer(invocation -> {
+            writing.countDown();
+            release.await();
+            return List.of();
+        });
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        Future<?> flush = executor.submit(engine::flush);
+        writing.await();
+
+        Future<?> evict = executor.submit(() -> engine.evict(1L));
+        Thread.sleep(100);
+        assertThat(evict.isDone()).isFalse();
+
+        release.countDown();
+        flush.get(10, TimeUnit.SECONDS);
+        evict.get(10, TimeUnit.SECONDS);
+        executor.shutdown();
+        assertThat(engine.getAvailable(1L)).isNull();
+    }
+
+    @Test
+    void remove_ShouldDropEverythingBuffered() {
+        engine.reserve(product(1L, 10), 3);
+
+        engine.remove(1L);
+        engine.flush();
+
+        assertThat(engine.getReserved(1L)).isNull();
+        verify(productRepository, never()).applyStockDeltas(anyMap());
+    }
+
+    @Test
+    void settleAndRelease_ShouldTrackReservedUnitsAndActiveOrderLines() {
+        StoredProduct product = product(1L, 10);
+        engine.reserve(product, 3);
+        engine.reserve(product, 2);
+
+        engine.settle(product, 3);
+        assertThat(engine.getReserved(1L)).isEqualTo(2);
+        assertThat(engine.getActiveOrderLines(1L)).isEqualTo(2);
+
+        engine.release(product, 3, true);
+        engine.release(product, 2, false);
+        assertThat(engine.getAvailable(1L)).isEqualTo(10);
+        assertThat(engine.getReserved(1L)).isZero();
+        assertThat(engine.getActiveOrderLines(1L)).isZero();
+    }
+
+    @Test
+    void reserve_InWriteThroughMode_ShouldDecrementStoredStockImmediately() {
+        engine = new StockReservationEngine(productRepository, StockWriteMode.WRITE_THROUGH);
+        when(productRepository.decrementStock(1L, 4)).thenReturn(1);
+
+        engine.reserve(product(1L, 10), 4);
+        engine.flush();
+
+        verify(productRepository, times(1)).decrementStock(1L, 4);
+        // only the reservation counts are left for the flush
+        verify(productRepository, times(1)).applyStockDeltas(Map.of(1L, new StockDelta(0, 4, 1)));
+        assertThat(engine.getAvailable(1L)).isEqualTo(6);
+    }
+
+    @Test
+    void reserve_InWriteThroughMode_WhenStoredStockIsLower_ShouldThrowAndReloadCounter() {
+        engine = new StockReservationEngine(productRepository, StockWriteMode.WRITE_THROUGH);
+        when(productRepository.decrementStock(1L, 4)).thenReturn(0);
+
+        assertThatThrownBy(() -> engine.reserve(product(1L, 10), 4))
+                .isInstanceOf(InsufficientStockException.class);
+        assertThat(engine.getAvailable(1L)).isNull();
+    }
+
+    @Test
+    void reserve_InWriteThroughMode_WhenLaterLineIsRejected_ShouldUndoEarlierWrites() {
+        engine = new StockReservationEngine(productRepository, StockWriteMode.WRITE_THROUGH);
+        when(productRepository.decrementStock(1L, 2)).thenReturn(1);
+        when(productRepository.decrementStock(2L, 3)).thenReturn(0);
+
+        assertThatThrownBy(() -> engine.reserve(List.of(new StockLine(product(1L, 10), 2), new StockLine(product(2L, 10), 3))))
+                .isInstanceOf(InsufficientStockException.class);
+
+        verify(productRepository, times(1)).incrementStock(1L, 2);
+        assertThat(engine.getAvailable(1L)).isEqualTo(10);
+        assertThat(engine.getAvailable(2L)).isNull();
+    }
+
+    private StoredProduct product(Long id, int stock) {
+        StoredProduct product = new StoredProduct("Product " + id, stock, new BigDecimal("9.99"));
+        product.setId(id);
+        return product;
+    }
+}
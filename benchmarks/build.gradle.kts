@@ -0,0 +1,40 @@
+plugins {
+    id("java")
+    id("me.champeau.jmh") version "0.7.2"
+}
+
+group = "com.klepek"
+version = "1.0-SNAPSHOT"
+
+repositories {
+    mavenCentral()
+}
+
+dependencies {
+    jmhImplementation(project(":backend"))
+    jmhImplementation(platform("org.springframework.boot:spring-boot-dependencies:3.2.3"))
+    jmhImplementation("org.springframework.boot:spring-boot-starter-data-jpa")
+    jmhRuntimeOnly("com.h2database:h2")
+}
+
+// ./gradlew :benchmarks:jmh, results are written to build/results/jmh/results.json
+jmh {
+    warmupIterations.set(2)
+    iterations.set(5)
+    fork.set(1)
+    resultFormat.set("JSON")
+    jvmArgsAppend.add("-Xmx2g")
+}
+
+// ./gradlew :benchmarks:stress -Pstress.threads=64 -Pstress.durationSeconds=60 -Pstress.skews=0,0.99,1.5
+// fails the build when stock + reserved drifts from the initial stock of any product
+tasks.register<JavaExec>("stress") {
+    group = "verification"
+    description = "Runs mixed order traffic against skewed product popularity and checks the stock invariant."
+    classpath = sourceSets["jmh"].runtimeClasspath
+    mainClass.set("com.klepek.benchmarks.StressHarness")
+    jvmArgs("-Xmx2g")
+    project.properties
+        .filterKeys { it.startsWith("stress.") }
+        .forEach { (key, value) -> systemProperty(key, value.toString()) }
+}
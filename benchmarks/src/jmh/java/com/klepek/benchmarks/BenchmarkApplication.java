@@ -0,0 +1,76 @@
+package com.klepek.benchmarks;
+
+import com.klepek.Main;
+import com.klepek.model.Order;
+import com.klepek.model.OrderStatus;
+import com.klepek.model.Product;
+import com.klepek.order.OrderService;
+import com.klepek.product.ProductService;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+// boots the backend against embedded H2 and seeds it from a fixed seed, so every run measures the same data
+final class BenchmarkApplication {
+
+    static final long SEED = 42;
+
+    // large enough that seeding and measuring never run a product out of stock
+    static final int UNLIMITED_STOCK = Integer.MAX_VALUE / 2;
+
+    private static final int SEED_BATCH_SIZE = 1_000;
+
+    private BenchmarkApplication() {
+    }
+
+    static ConfigurableApplicationContext start() {
+        return start("benchmarks");
+    }
+
+    // the in-memory database outlives the context, so callers that restart it pick a new name for a clean slate
+    static ConfigurableApplicationContext start(String databaseName, String... properties) {
+        return new SpringApplicationBuilder(Main.class)
+                .web(WebApplicationType.NONE)
+                .properties(
+                        "spring.datasource.url=jdbc:h2:mem:" + databaseName + ";DB_CLOSE_DELAY=-1",
+                        "spring.jpa.show-sql=false",
+                        "logging.level.root=WARN"
+                )
+                .properties(properties)
+                .run();
+    }
+
+    static List<Long> seedProducts(ProductService productService, int count, Random random) {
+        List<Long> ids = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            BigDecimal price = BigDecimal.valueOf(100 + random.nextInt(100_000), 2);
+            ids.add(productService.createProduct(new Product("Product " + i, UNLIMITED_STOCK, price)).id());
+        }
+        return ids;
+    }
+
+    static void seedOrders(OrderService orderService, List<Long> productIds, int count, int maxLines, Random random) {
+        for (int from = 0; from < count; from += SEED_BATCH_SIZE) {
+            List<Order> batch = new ArrayList<>(SEED_BATCH_SIZE);
+            for (int i = from; i < Math.min(from + SEED_BATCH_SIZE, count); i++) {
+                batch.add(randomOrder(productIds, 1 + random.nextInt(maxLines), random));
+            }
+            orderService.createOrders(batch);
+        }
+    }
+
+    // lines reference distinct products, so the order keeps exactly the requested number of items
+    static Order randomOrder(List<Long> productIds, int lines, Random random) {
+        int start = random.nextInt(productIds.size());
+        List<Product> products = new ArrayList<>(lines);
+        for (int i = 0; i < lines; i++) {
+            products.add(new Product(productIds.get((start + i) % productIds.size()), 1 + random.nextInt(3)));
+        }
+        return new Order(null, products, OrderStatus.CREATED);
+    }
+}
@@ -0,0 +1,98 @@
+package com.klepek.benchmarks;
+
+import com.klepek.model.Order;
+import com.klepek.model.OrderStatus;
+import com.klepek.order.OrderService;
+import com.klepek.product.ProductService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.dao.ConcurrencyFailureException;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+// eight threads cancel orders drawn from a shared pool of open ones; the fewer orders in the pool, the more often
+// two threads pick the same one and either queue on its row lock or lose the version check and retry.
+// a cancelled order is replaced by a fresh one, so the pool keeps its size
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Threads(8)
+public class ConcurrencyModeBenchmark {
+
+    private static final int PRODUCTS = 200;
+
+    private static final int LINES = 3;
+
+    @Param({"PESSIMISTIC", "OPTIMISTIC"})
+    private String mode;
+
+    // open orders the threads compete for
+    @Param({"1", "16", "1024"})
+    private int hotOrders;
+
+    private ConfigurableApplicationContext context;
+    private OrderService orderService;
+    private List<Long> productIds;
+    private AtomicLongArray orders;
+    private final LongAdder failures = new LongAdder();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkApplication.start("concurrency-" + mode + "-" + hotOrders, "orders.concurrency.mode=" + mode);
+        orderService = context.getBean(OrderService.class);
+        Random random = new Random(BenchmarkApplication.SEED);
+        productIds = BenchmarkApplication.seedProducts(context.getBean(ProductService.class), PRODUCTS, random);
+        orders = new AtomicLongArray(hotOrders);
+        for (int i = 0; i < hotOrders; i++) {
+            orders.set(i, createOrder(random));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        System.out.printf("%nmode=%s hotOrders=%d failed cancels: %d%n", mode, hotOrders, failures.sum());
+        context.close();
+    }
+
+    @Benchmark
+    public Order cancelHotOrder() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int slot = random.nextInt(hotOrders);
+        long orderId = orders.get(slot);
+        Order cancelled;
+        try {
+            cancelled = orderService.cancelOrder(orderId);
+        } catch (ConcurrencyFailureException e) {
+            // a lock timeout or deadlock in pessimistic mode, retries used up in optimistic mode
+            failures.increment();
+            return null;
+        }
+        // only the thread that swaps the slot keeps its new order, a late one cancels its spare again
+        if (cancelled.status() == OrderStatus.CANCELLED && orders.get(slot) == orderId) {
+            long replacement = createOrder(random);
+            if (!orders.compareAndSet(slot, orderId, replacement)) {
+                orderService.cancelOrder(replacement);
+            }
+        }
+        return cancelled;
+    }
+
+    private long createOrder(Random random) {
+        return orderService.createOrder(BenchmarkApplication.randomOrder(productIds, LINES, random)).orderNumber();
+    }
+}
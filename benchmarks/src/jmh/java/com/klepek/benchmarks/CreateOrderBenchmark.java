@@ -0,0 +1,63 @@
+package com.klepek.benchmarks;
+
+import com.klepek.model.Order;
+import com.klepek.order.OrderService;
+import com.klepek.product.ProductService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class CreateOrderBenchmark {
+
+    private static final int PRODUCTS = 200;
+
+    // power of two, so the next request is picked with a mask
+    private static final int REQUESTS = 1_024;
+
+    @Param({"1", "10", "100"})
+    private int lines;
+
+    private ConfigurableApplicationContext context;
+    private OrderService orderService;
+    private List<Order> requests;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkApplication.start();
+        orderService = context.getBean(OrderService.class);
+        Random random = new Random(BenchmarkApplication.SEED);
+        List<Long> productIds = BenchmarkApplication.seedProducts(context.getBean(ProductService.class), PRODUCTS, random);
+
+        requests = new ArrayList<>(REQUESTS);
+        for (int i = 0; i < REQUESTS; i++) {
+            requests.add(BenchmarkApplication.randomOrder(productIds, lines, random));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Order createOrder() {
+        return orderService.createOrder(requests.get(next++ & (REQUESTS - 1)));
+    }
+}
@@ -0,0 +1,65 @@
+package com.klepek.benchmarks;
+
+import com.klepek.model.Order;
+import com.klepek.order.OrderService;
+import com.klepek.product.ProductService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// pay and cancel only work once per order, so every invocation gets a fresh one; both calls take
+// a transaction and a row lock, which keeps the per-invocation setup overhead small in comparison
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class OrderLifecycleBenchmark {
+
+    private static final int PRODUCTS = 200;
+
+    private static final int LINES = 3;
+
+    private ConfigurableApplicationContext context;
+    private OrderService orderService;
+    private List<Long> productIds;
+    private Random random;
+    private Long orderId;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkApplication.start();
+        orderService = context.getBean(OrderService.class);
+        random = new Random(BenchmarkApplication.SEED);
+        productIds = BenchmarkApplication.seedProducts(context.getBean(ProductService.class), PRODUCTS, random);
+    }
+
+    @Setup(Level.Invocation)
+    public void createOrder() {
+        orderId = orderService.createOrder(BenchmarkApplication.randomOrder(productIds, LINES, random)).orderNumber();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Order payOrder() {
+        return orderService.payOrder(orderId);
+    }
+
+    @Benchmark
+    public Order cancelOrder() {
+        return orderService.cancelOrder(orderId);
+    }
+}
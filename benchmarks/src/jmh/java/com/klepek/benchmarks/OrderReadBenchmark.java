@@ -0,0 +1,55 @@
+package com.klepek.benchmarks;
+
+import com.klepek.model.Order;
+import com.klepek.order.OrderService;
+import com.klepek.product.ProductService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class OrderReadBenchmark {
+
+    private static final int PRODUCTS = 1_000;
+
+    private static final int MAX_LINES = 5;
+
+    @Param({"10000", "100000"})
+    private int orders;
+
+    private ConfigurableApplicationContext context;
+    private OrderService orderService;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkApplication.start();
+        orderService = context.getBean(OrderService.class);
+        Random random = new Random(BenchmarkApplication.SEED);
+        List<Long> productIds = BenchmarkApplication.seedProducts(context.getBean(ProductService.class), PRODUCTS, random);
+        BenchmarkApplication.seedOrders(orderService, productIds, orders, MAX_LINES, random);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public List<Order> getAllOrders() {
+        return orderService.getAllOrders();
+    }
+}
@@ -0,0 +1,57 @@
+package com.klepek.benchmarks;
+
+import com.klepek.model.Product;
+import com.klepek.product.ProductCatalog;
+import com.klepek.product.ProductService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ProductReadBenchmark {
+
+    private static final int PRODUCTS = 1_000;
+
+    private ConfigurableApplicationContext context;
+    private ProductService productService;
+    private ProductCatalog productCatalog;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkApplication.start();
+        productService = context.getBean(ProductService.class);
+        productCatalog = context.getBean(ProductCatalog.class);
+        BenchmarkApplication.seedProducts(productService, PRODUCTS, new Random(BenchmarkApplication.SEED));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    // served from the catalog snapshot
+    @Benchmark
+    public List<Product> getAllProducts() {
+        return productService.getAllProducts();
+    }
+
+    // what every read cost before the catalog, and what the first read after a product change still costs
+    @Benchmark
+    public List<Product> getAllProductsAfterInvalidate() {
+        productCatalog.invalidate();
+        return productService.getAllProducts();
+    }
+}
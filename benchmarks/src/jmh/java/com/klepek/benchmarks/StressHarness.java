@@ -0,0 +1,284 @@
+package com.klepek.benchmarks;
+
+import com.klepek.model.Order;
+import com.klepek.model.OrderStatus;
+import com.klepek.model.Product;
+import com.klepek.order.OrderCoalescer;
+import com.klepek.order.OrderService;
+import com.klepek.product.ProductService;
+import com.klepek.stock.StockReservationEngine;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+// mixed create / pay / cancel / expire traffic against a few hot products; fails the run when stock leaks or goes negative.
+// ./gradlew :benchmarks:stress -Pstress.threads=64 -Pstress.skews=0,1.2 -Pstress.coalescing=true
+public final class StressHarness {
+
+    private final int threads = Integer.getInteger("stress.threads", 32);
+    private final int durationSeconds = Integer.getInteger("stress.durationSeconds", 20);
+    private final int products = Integer.getInteger("stress.products", 50);
+    private final int initialStock = Integer.getInteger("stress.initialStock", 1_000);
+    private final int maxLines = Integer.getInteger("stress.maxLines", 3);
+    // creates go through the OrderCoalescer's group commit instead of one transaction each
+    private final boolean coalescing = Boolean.getBoolean("stress.coalescing");
+    private final double[] skews = Arrays.stream(System.getProperty("stress.skews", "0,0.99,1.5").split(","))
+            .mapToDouble(Double::parseDouble)
+            .toArray();
+
+    public static void main(String[] args) throws Exception {
+        boolean consistent = new StressHarness().run();
+        System.exit(consistent ? 0 : 1);
+    }
+
+    private boolean run() throws Exception {
+        System.out.printf("threads=%d duration=%ds products=%d initialStock=%d maxLines=%d coalescing=%b%n",
+                threads, durationSeconds, products, initialStock, maxLines, coalescing);
+        boolean consistent = true;
+        for (int round = 0; round < skews.length; round++) {
+            consistent &= runRound(round, skews[round]);
+        }
+        return consistent;
+    }
+
+    private boolean runRound(int round, double skew) throws Exception {
+        try (ConfigurableApplicationContext context = BenchmarkApplication.start("stress-" + round, "orders.coalescing.enabled=" + coalescing)) {
+            OrderService orderService = context.getBean(OrderService.class);
+            Function<Order, Order> create = coalescing ? context.getBean(OrderCoalescer.class)::createOrder : orderService::createOrder;
+            StockReservationEngine stockReservationEngine = context.getBean(StockReservationEngine.class);
+            JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+            List<Long> productIds = seedProducts(context.getBean(ProductService.class));
+
+            ZipfianSampler sampler = new ZipfianSampler(productIds.size(), skew);
+            ConcurrentLinkedQueue<Long> openOrders = new ConcurrentLinkedQueue<>();
+            Map<String, AtomicLong> rejections = new ConcurrentHashMap<>();
+            AtomicBoolean running = new AtomicBoolean(true);
+            AtomicLong negativeSamples = new AtomicLong();
+            List<Map<Operation, LongList>> latencies = new ArrayList<>();
+            CountDownLatch done = new CountDownLatch(threads);
+
+            for (int t = 0; t < threads; t++) {
+                Map<Operation, LongList> own = new EnumMap<>(Operation.class);
+                for (Operation operation : Operation.values()) {
+                    own.put(operation, new LongList());
+                }
+                latencies.add(own);
+                Random random = new Random(BenchmarkApplication.SEED + t);
+                Thread.ofPlatform().name("stress-" + t).start(() -> {
+                    try {
+                        while (running.get()) {
+                            Operation operation = Operation.pick(random, openOrders.isEmpty());
+                            long started = System.nanoTime();
+                            try {
+                                execute(operation, orderService, create, jdbcTemplate, productIds, sampler, openOrders, random);
+                            } catch (RuntimeException e) {
+                                // sold out, already settled or expired: expected under contention, counted rather than fatal
+                                rejections.computeIfAbsent(operation + " " + e.getClass().getSimpleName(), key -> new AtomicLong()).incrementAndGet();
+                            }
+                            own.get(operation).add(System.nanoTime() - started);
+                        }
+                    } finally {
+                        done.countDown();
+                    }
+                });
+            }
+
+            // the in-memory counters are what buyers see, so they are sampled while the traffic runs
+            Thread monitor = Thread.ofPlatform().name("stress-monitor").start(() -> {
+                while (running.get()) {
+                    for (Long productId : productIds) {
+                        Integer available = stockReservationEngine.getAvailable(productId);
+                        if (available != null && available < 0) {
+                            negativeSamples.incrementAndGet();
+                        }
+                    }
+                    try {
+                        Thread.sleep(10);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+            });
+
+            TimeUnit.SECONDS.sleep(durationSeconds);
+            running.set(false);
+            done.await();
+            monitor.join();
+            stockReservationEngine.flush();
+
+            report(skew, latencies, rejections);
+            return verify(jdbcTemplate, productIds, negativeSamples.get());
+        }
+    }
+
+    private List<Long> seedProducts(ProductService productService) {
+        List<Long> ids = new ArrayList<>(products);
+        for (int i = 0; i < products; i++) {
+            ids.add(productService.createProduct(new Product("Product " + i, initialStock, BigDecimal.TEN)).id());
+        }
+        return ids;
+    }
+
+    private void execute(
+            Operation operation,
+            OrderService orderService,
+            Function<Order, Order> create,
+            JdbcTemplate jdbcTemplate,
+            List<Long> productIds,
+            ZipfianSampler sampler,
+            ConcurrentLinkedQueue<Long> openOrders,
+            Random random
+    ) {
+        switch (operation) {
+            case CREATE -> {
+                int lines = 1 + random.nextInt(maxLines);
+                List<Product> items = new ArrayList<>(lines);
+                for (int i = 0; i < lines; i++) {
+                    items.add(new Product(productIds.get(sampler.next(random)), 1 + random.nextInt(3)));
+                }
+                Long orderId = create.apply(new Order(null, items, OrderStatus.CREATED)).orderNumber();
+                openOrders.add(orderId);
+            }
+            case PAY -> {
+                Long orderId = openOrders.poll();
+                if (orderId != null) {
+                    orderService.payOrder(orderId);
+                }
+            }
+            case CANCEL -> {
+                Long orderId = openOrders.poll();
+                if (orderId != null) {
+                    orderService.cancelOrder(orderId);
+                }
+            }
+            case EXPIRE -> {
+                Long orderId = openOrders.poll();
+                if (orderId != null) {
+                    // backdated instead of waiting out the 30 minute window
+                    jdbcTemplate.update("update orders set expires_at = ? where id = ?", LocalDateTime.now().minusSeconds(1), orderId);
+                    orderService.expireOrder(orderId);
+                }
+            }
+        }
+    }
+
+    private void report(double skew, List<Map<Operation, LongList>> latencies, Map<String, AtomicLong> rejections) {
+        System.out.printf("%nskew=%.2f%n", skew);
+        System.out.printf("%-8s %10s %10s %10s %10s %10s%n", "op", "count", "ops/s", "p50 us", "p99 us", "p999 us");
+        long total = 0;
+        for (Operation operation : Operation.values()) {
+            LongList merged = new LongList();
+            latencies.forEach(own -> merged.addAll(own.get(operation)));
+            long[] sorted = merged.sorted();
+            total += sorted.length;
+            System.out.printf("%-8s %10d %10.0f %10.1f %10.1f %10.1f%n",
+                    operation, sorted.length, (double) sorted.length / durationSeconds,
+                    percentile(sorted, 0.50), percentile(sorted, 0.99), percentile(sorted, 0.999));
+        }
+        System.out.printf("%-8s %10d %10.0f%n", "total", total, (double) total / durationSeconds);
+        rejections.forEach((reason, count) -> System.out.printf("rejected %s: %d%n", reason, count.get()));
+    }
+
+    // per product: what is left in stock plus what live orders hold must add up to what was there at the start
+    private boolean verify(JdbcTemplate jdbcTemplate, List<Long> productIds, long negativeSamples) {
+        Map<Long, Integer> stock = new HashMap<>();
+        jdbcTemplate.query("select id, stock_quantity from products",
+                row -> {
+                    stock.put(row.getLong(1), row.getInt(2));
+                });
+        Map<Long, Integer> held = new HashMap<>();
+        jdbcTemplate.query("select i.product_id, sum(i.quantity) from order_items i join orders o on o.id = i.order_id " +
+                        "where o.status <> 'CANCELLED' group by i.product_id",
+                row -> {
+                    held.put(row.getLong(1), row.getInt(2));
+                });
+
+        boolean consistent = negativeSamples == 0;
+        if (negativeSamples > 0) {
+            System.out.printf("FAILED: %d samples of negative in-memory stock%n", negativeSamples);
+        }
+        for (Long productId : productIds) {
+            int left = stock.getOrDefault(productId, 0);
+            int reserved = held.getOrDefault(productId, 0);
+            if (left < 0 || left + reserved != initialStock) {
+                consistent = false;
+                System.out.printf("FAILED: product %d has stock %d + reserved %d != initial %d%n", productId, left, reserved, initialStock);
+            }
+        }
+        if (consistent) {
+            System.out.println("stock invariant holds for all products");
+        }
+        return consistent;
+    }
+
+    private static double percentile(long[] sorted, double quantile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.min(sorted.length - 1, Math.ceil(quantile * sorted.length) - 1);
+        return sorted[Math.max(index, 0)] / 1_000.0;
+    }
+
+    private enum Operation {
+        CREATE, PAY, CANCEL, EXPIRE;
+
+        // half of the traffic creates orders, the rest settles them; with nothing open everything creates
+        private static Operation pick(Random random, boolean nothingOpen) {
+            if (nothingOpen) {
+                return CREATE;
+            }
+            int roll = random.nextInt(10);
+            if (roll < 5) {
+                return CREATE;
+            }
+            if (roll < 7) {
+                return PAY;
+            }
+            if (roll < 9) {
+                return CANCEL;
+            }
+            return EXPIRE;
+        }
+    }
+
+    // latencies are kept raw per thread and only merged and sorted once the round is over
+    private static final class LongList {
+        private long[] values = new long[1_024];
+        private int size;
+
+        private void add(long value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        private void addAll(LongList other) {
+            for (int i = 0; i < other.size; i++) {
+                add(other.values[i]);
+            }
+        }
+
+        private long[] sorted() {
+            long[] copy = Arrays.copyOf(values, size);
+            Arrays.sort(copy);
+            return copy;
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.klepek.order;
+
+import com.klepek.model.Product;
+import com.klepek.model.StoredOrder;
+import com.klepek.model.StoredOrderItem;
+import com.klepek.model.StoredProduct;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// lives in the service's package to reach the package-private mapping without a database
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class OrderMappingBenchmark {
+
+    @Param({"1", "10", "100"})
+    private int lines;
+
+    private StoredOrder order;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42);
+        order = new StoredOrder();
+        List<StoredOrderItem> orderItems = new ArrayList<>(lines);
+        for (int i = 0; i < lines; i++) {
+            StoredProduct product = new StoredProduct("Product " + i, 1_000, BigDecimal.valueOf(100 + random.nextInt(100_000), 2));
+            product.setId((long) i + 1);
+            StoredOrderItem orderItem = new StoredOrderItem(order, product, 1 + random.nextInt(3));
+            orderItem.setTotalPrice(product.getPricePerUnit().multiply(BigDecimal.valueOf(orderItem.getQuantity())));
+            orderItems.add(orderItem);
+        }
+        order.setOrderItems(orderItems);
+    }
+
+    @Benchmark
+    public List<Product> mapOrderItemsToProducts() {
+        return DefaultOrderService.mapOrderItemsToProducts(order);
+    }
+}
@@ -1,2 +1,3 @@
 rootProject.name = "case-study"
-include("backend")
\ No newline at end of file
+include("backend")
+include("benchmarks")